@@ -0,0 +1,129 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. 
+ *
+ * Copyright 2010-2017 ISSE, University of Augsburg 
+ */
+
+package org.roboticsapi.feature.visualization.viewer.javafx.model;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.interactivemesh.jfx.importer.col.ColModelImporter;
+
+import javafx.scene.Node;
+
+/**
+ * Compares building a model from its Collada file with loading its
+ * {@link BinaryMesh} file.
+ * 
+ * The benchmark is built with the test sources (<code>mvn test-compile</code>),
+ * so it is not part of the viewer jar. Run it with
+ * <code>target/classes</code>, <code>target/test-classes</code> and the
+ * dependencies on the class path: <code>BinaryMeshBenchmark [model.dae
+ * ...]</code>. Without arguments, a synthetic model of 8 meshes with 100000
+ * triangles each is generated. The first run of each variant is reported
+ * separately as cold start, followed by the median of further runs.
+ */
+public class BinaryMeshBenchmark {
+
+	private static final int RUNS = 5;
+
+	public static void main(String[] args) throws IOException {
+		List<Path> models = new ArrayList<>();
+		for (String arg : args)
+			models.add(Paths.get(arg));
+		if (models.isEmpty())
+			models.add(generateModel(8, 100000));
+
+		System.out.printf("%-40s %10s %12s %12s %12s %12s%n", "model", "size [kB]", "dae cold", "dae median",
+				"binary cold", "binary median");
+		for (Path model : models) {
+			Path binary = Files.createTempFile("rapivis-benchmark", ".rmesh");
+			try {
+				double[] dae = new double[RUNS];
+				Node[] nodes = null;
+				for (int i = 0; i < RUNS; i++) {
+					long start = System.nanoTime();
+					ColModelImporter importer = new ColModelImporter();
+					importer.read(model.toFile());
+					nodes = importer.getImport();
+					dae[i] = (System.nanoTime() - start) / 1e6;
+				}
+				BinaryMesh.write(nodes, binary);
+
+				double[] bin = new double[RUNS];
+				for (int i = 0; i < RUNS; i++) {
+					long start = System.nanoTime();
+					BinaryMesh.read(binary);
+					bin[i] = (System.nanoTime() - start) / 1e6;
+				}
+
+				System.out.printf("%-40s %10d %9.1f ms %9.1f ms %9.1f ms %9.1f ms%n", model.getFileName(),
+						Files.size(model) / 1024, dae[0], median(dae), bin[0], median(bin));
+			} finally {
+				Files.deleteIfExists(binary);
+			}
+		}
+	}
+
+	private static double median(double[] times) {
+		double[] warm = Arrays.copyOfRange(times, 1, times.length);
+		Arrays.sort(warm);
+		return warm[warm.length / 2];
+	}
+
+	/**
+	 * Writes a Collada file with the given number of grid meshes.
+	 */
+	private static Path generateModel(int meshes, int triangles) throws IOException {
+		Path file = Files.createTempFile("rapivis-benchmark", ".dae");
+		file.toFile().deleteOnExit();
+		int side = (int) Math.ceil(Math.sqrt(triangles / 2.0));
+		try (BufferedWriter out = Files.newBufferedWriter(file)) {
+			out.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
+			out.write("<COLLADA xmlns=\"http://www.collada.org/2005/11/COLLADASchema\" version=\"1.4.1\">\n");
+			out.write("<asset><unit name=\"meter\" meter=\"1\"/><up_axis>Z_UP</up_axis></asset>\n");
+			out.write("<library_geometries>\n");
+			for (int m = 0; m < meshes; m++) {
+				int points = (side + 1) * (side + 1);
+				out.write("<geometry id=\"g" + m + "\"><mesh><source id=\"g" + m + "-pos\"><float_array id=\"g" + m
+						+ "-array\" count=\"" + 3 * points + "\">");
+				for (int y = 0; y <= side; y++)
+					for (int x = 0; x <= side; x++)
+						out.write((float) x / side + " " + (float) y / side + " "
+								+ (float) (0.05 * Math.sin(x * 0.3 + m) * Math.cos(y * 0.2)) + " ");
+				out.write("</float_array><technique_common><accessor source=\"#g" + m + "-array\" count=\"" + points
+						+ "\" stride=\"3\"><param name=\"X\" type=\"float\"/><param name=\"Y\" type=\"float\"/>"
+						+ "<param name=\"Z\" type=\"float\"/></accessor></technique_common></source>");
+				out.write("<vertices id=\"g" + m + "-vtx\"><input semantic=\"POSITION\" source=\"#g" + m
+						+ "-pos\"/></vertices>");
+				out.write("<triangles count=\"" + 2 * side * side + "\"><input semantic=\"VERTEX\" source=\"#g" + m
+						+ "-vtx\" offset=\"0\"/><p>");
+				for (int y = 0; y < side; y++) {
+					for (int x = 0; x < side; x++) {
+						int p = y * (side + 1) + x;
+						out.write(p + " " + (p + 1) + " " + (p + side + 1) + " " + (p + 1) + " " + (p + side + 2) + " "
+								+ (p + side + 1) + " ");
+					}
+				}
+				out.write("</p></triangles></mesh></geometry>\n");
+			}
+			out.write("</library_geometries>\n<library_visual_scenes><visual_scene id=\"Scene\">");
+			for (int m = 0; m < meshes; m++)
+				out.write("<node id=\"n" + m + "\"><translate>0 0 " + m + "</translate><instance_geometry url=\"#g" + m
+						+ "\"/></node>");
+			out.write("</visual_scene></library_visual_scenes>\n");
+			out.write("<scene><instance_visual_scene url=\"#Scene\"/></scene>\n</COLLADA>\n");
+		}
+		return file;
+	}
+
+}
@@ -0,0 +1,106 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. 
+ *
+ * Copyright 2010-2017 ISSE, University of Augsburg 
+ */
+
+package org.roboticsapi.feature.visualization;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Content hash of a Collada model and its aux files, identifying a model
+ * independent of its name. Applications and the viewer compute the same hash,
+ * so it can be used to check which models the viewer already has.
+ * 
+ * The hash is the hex encoded SHA-256 of the length and content of the DAE file
+ * followed by name, length and content of each aux file, ordered by name.
+ */
+public final class ModelHash {
+
+	private ModelHash() {
+	}
+
+	/**
+	 * Computes the content hash of a model held in memory.
+	 * 
+	 * @param modelData content of the DAE file
+	 * @param auxFiles  additional files by relative path, may be
+	 *                  <code>null</code>
+	 */
+	public static String of(byte[] modelData, Map<String, byte[]> auxFiles) {
+		MessageDigest digest = createDigest();
+		digest.update(ByteBuffer.allocate(8).putLong(modelData.length).array());
+		digest.update(modelData);
+		if (auxFiles != null) {
+			for (Map.Entry<String, byte[]> file : new TreeMap<>(auxFiles).entrySet()) {
+				updateName(digest, file.getKey());
+				digest.update(ByteBuffer.allocate(8).putLong(file.getValue().length).array());
+				digest.update(file.getValue());
+			}
+		}
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * Computes the content hash of a model stored in files, without reading the
+	 * files into memory.
+	 * 
+	 * @param modelFile the DAE file
+	 * @param auxFiles  additional files by relative path, may be
+	 *                  <code>null</code>
+	 */
+	public static String of(Path modelFile, Map<String, Path> auxFiles) throws IOException {
+		MessageDigest digest = createDigest();
+		byte[] buffer = new byte[64 * 1024];
+		update(digest, modelFile, buffer);
+		if (auxFiles != null) {
+			for (Map.Entry<String, Path> file : new TreeMap<>(auxFiles).entrySet()) {
+				updateName(digest, file.getKey());
+				update(digest, file.getValue(), buffer);
+			}
+		}
+		return toHex(digest.digest());
+	}
+
+	private static void updateName(MessageDigest digest, String name) {
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		digest.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+		digest.update(bytes);
+	}
+
+	private static void update(MessageDigest digest, Path file, byte[] buffer) throws IOException {
+		digest.update(ByteBuffer.allocate(8).putLong(Files.size(file)).array());
+		try (InputStream in = Files.newInputStream(file)) {
+			int read;
+			while ((read = in.read(buffer)) > 0)
+				digest.update(buffer, 0, read);
+		}
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder result = new StringBuilder(2 * bytes.length);
+		for (byte b : bytes)
+			result.append(String.format("%02x", b));
+		return result.toString();
+	}
+
+}
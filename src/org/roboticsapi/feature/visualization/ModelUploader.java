@@ -0,0 +1,102 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. 
+ *
+ * Copyright 2010-2017 ISSE, University of Augsburg 
+ */
+
+package org.roboticsapi.feature.visualization;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Uploads models from files in deflated chunks using
+ * {@link VisualizationClientScene#beginModelUpload(String, String)}, so neither
+ * side holds a whole model in memory. The content hash of the model is used as
+ * upload id, so calling {@link #upload(String, Path, Map)} again after a
+ * dropped connection only transfers the missing data.
+ */
+public class ModelUploader {
+
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+	private final VisualizationClientScene scene;
+	private final int chunkSize;
+
+	public ModelUploader(VisualizationClientScene scene) {
+		this(scene, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * @param scene     the scene to upload through
+	 * @param chunkSize uncompressed size of the chunks
+	 */
+	public ModelUploader(VisualizationClientScene scene, int chunkSize) {
+		this.scene = scene;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Uploads a model, resuming a previous upload of the same content.
+	 * 
+	 * @param modelName asset name of the model
+	 * @param modelFile the DAE file
+	 * @param auxFiles  additional files by relative path, may be
+	 *                  <code>null</code>
+	 * @return the content hash of the model
+	 */
+	public String upload(String modelName, Path modelFile, Map<String, Path> auxFiles) throws Exception {
+		String hash = ModelHash.of(modelFile, auxFiles);
+		scene.beginModelUpload(hash, modelName);
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			uploadFile(hash, null, modelFile, deflater);
+			if (auxFiles != null) {
+				for (Map.Entry<String, Path> file : auxFiles.entrySet())
+					uploadFile(hash, file.getKey(), file.getValue(), deflater);
+			}
+		} finally {
+			deflater.end();
+		}
+		scene.finishModelUpload(hash, hash);
+		return hash;
+	}
+
+	private void uploadFile(String uploadId, String fileName, Path file, Deflater deflater) throws Exception {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			long offset = scene.appendModelChunk(uploadId, fileName, 0, null);
+			if (offset > size)
+				throw new IOException("Upload " + uploadId + " has more data than " + file);
+
+			ByteBuffer chunk = ByteBuffer.allocate(chunkSize);
+			byte[] compressed = new byte[chunkSize + chunkSize / 8 + 64];
+			while (offset < size) {
+				chunk.clear();
+				while (chunk.hasRemaining() && channel.read(chunk, offset + chunk.position()) > 0)
+					;
+				deflater.reset();
+				deflater.setInput(chunk.array(), 0, chunk.position());
+				deflater.finish();
+				int length = 0;
+				while (!deflater.finished()) {
+					if (length == compressed.length)
+						compressed = Arrays.copyOf(compressed, 2 * compressed.length);
+					length += deflater.deflate(compressed, length, compressed.length - length);
+				}
+				long next = scene.appendModelChunk(uploadId, fileName, offset, Arrays.copyOf(compressed, length));
+				if (next <= offset)
+					throw new IOException("Upload " + uploadId + " does not continue at " + offset);
+				offset = next;
+			}
+		}
+	}
+
+}
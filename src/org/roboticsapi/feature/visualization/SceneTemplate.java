@@ -0,0 +1,147 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. 
+ *
+ * Copyright 2010-2017 ISSE, University of Augsburg 
+ */
+
+package org.roboticsapi.feature.visualization;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Structure of frames, relations and models registered once with
+ * {@link VisualizationClientScene#registerTemplate(SceneTemplate)} and
+ * instantiated any number of times, e.g. for a fleet of identical robots.
+ * 
+ * Frames are referenced by the index returned by {@link #addFrame(String)};
+ * {@link #PARENT} refers to the frame an instance is attached to.
+ */
+public class SceneTemplate implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * frame index of the parent frame given when instantiating the template
+	 */
+	public static final int PARENT = -1;
+
+	private final List<String> frames = new ArrayList<>();
+	private final List<int[]> relations = new ArrayList<>();
+	private final List<double[]> relationPoses = new ArrayList<>();
+	private final List<String> modelNames = new ArrayList<>();
+	private final List<String> modelAssets = new ArrayList<>();
+	private final List<Integer> modelFrames = new ArrayList<>();
+	private final List<double[]> modelPoses = new ArrayList<>();
+
+	/**
+	 * Adds a frame.
+	 * 
+	 * @param name the frame name; instances prefix it with the instance name
+	 * @return the frame index
+	 */
+	public int addFrame(String name) {
+		frames.add(name);
+		return frames.size() - 1;
+	}
+
+	/**
+	 * Adds a relation between two frames of the template, see
+	 * {@link VisualizationClientScene#addRelation(int, int, double, double, double, double, double, double)}.
+	 * Every instance gets its own pose for the relation.
+	 */
+	public void addRelation(int from, int to, double x, double y, double z, double a, double b, double c) {
+		checkFrame(from);
+		checkFrame(to);
+		relations.add(new int[] { from, to });
+		relationPoses.add(new double[] { x, y, z, a, b, c });
+	}
+
+	/**
+	 * Adds a model to a frame of the template, see
+	 * {@link VisualizationClientScene#addModel(String, int, String, double, double, double, double, double, double)}.
+	 * The model must be available on the server when the template is registered.
+	 */
+	public void addModel(String name, int frame, String modelName, double x, double y, double z, double a, double b,
+			double c) {
+		checkFrame(frame);
+		modelNames.add(name);
+		modelFrames.add(frame);
+		modelAssets.add(modelName);
+		modelPoses.add(new double[] { x, y, z, a, b, c });
+	}
+
+	private void checkFrame(int frame) {
+		if (frame < PARENT || frame >= frames.size())
+			throw new IllegalArgumentException("Unknown template frame " + frame);
+	}
+
+	public int getFrameCount() {
+		return frames.size();
+	}
+
+	public String getFrameName(int frame) {
+		return frames.get(frame);
+	}
+
+	public int getRelationCount() {
+		return relations.size();
+	}
+
+	public int getRelationFrom(int relation) {
+		return relations.get(relation)[0];
+	}
+
+	public int getRelationTo(int relation) {
+		return relations.get(relation)[1];
+	}
+
+	/**
+	 * Returns the initial pose (x, y, z, a, b, c) of a relation.
+	 */
+	public double[] getRelationPose(int relation) {
+		return relationPoses.get(relation).clone();
+	}
+
+	public int getModelCount() {
+		return modelNames.size();
+	}
+
+	public String getModelName(int model) {
+		return modelNames.get(model);
+	}
+
+	public int getModelFrame(int model) {
+		return modelFrames.get(model);
+	}
+
+	/**
+	 * Returns the asset name of a model as used for uploading it.
+	 */
+	public String getModelAsset(int model) {
+		return modelAssets.get(model);
+	}
+
+	/**
+	 * Returns the pose (x, y, z, a, b, c) of a model relative to its frame.
+	 */
+	public double[] getModelPose(int model) {
+		return modelPoses.get(model).clone();
+	}
+
+	/**
+	 * Returns the id of a frame of an instance.
+	 * 
+	 * @param frameIds    the frame ids returned by
+	 *                    {@link VisualizationClientScene#instantiateTemplate(int, String[], int)}
+	 * @param instance    the index of the instance
+	 * @param frame       the template frame index or {@link #PARENT}
+	 * @param parentFrame the parent frame the instances were attached to
+	 */
+	public int getFrameId(int[] frameIds, int instance, int frame, int parentFrame) {
+		return frame == PARENT ? parentFrame : frameIds[instance * frames.size() + frame];
+	}
+
+}
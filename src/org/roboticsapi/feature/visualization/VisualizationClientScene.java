@@ -42,9 +42,17 @@ public interface VisualizationClientScene extends Remote {
 	int addSphere(String name, int frame, double radius, double x, double y, double z, double a, double b, double c)
 			throws Exception;
 
+	/**
+	 * Adds a cylinder along the z axis, centered at the given pose.
+	 */
 	int addCylinder(String name, int frame, double radius, double height, double x, double y, double z, double a,
 			double b, double c) throws Exception;
 
+	/**
+	 * Adds a capsule along the z axis, centered at the given pose.
+	 * 
+	 * @param height the distance between the centers of the two hemispheres
+	 */
 	int addCapsule(String name, int frame, double radius, double height, double x, double y, double z, double a,
 			double b, double c) throws Exception;
 
@@ -56,6 +64,18 @@ public interface VisualizationClientScene extends Remote {
 	 */
 	boolean hasModel(String modelName) throws Exception;
 
+	/**
+	 * Checks which of the given models are missing on the server, replacing one
+	 * {@link #hasModel(String)} call per model. Models whose content is already
+	 * known under another name are registered under the given name and are not
+	 * reported.
+	 * 
+	 * @param models  {@link ModelHash} by asset name
+	 * @param preload whether to start importing the available models
+	 * @return asset names of the models to upload
+	 */
+	String[] getMissingModels(Map<String, String> models, boolean preload) throws Exception;
+
 	/**
 	 * Uploads a Collada model to the server
 	 * 
@@ -65,6 +85,39 @@ public interface VisualizationClientScene extends Remote {
 	 */
 	void uploadModel(String modelName, byte[] modelData, Map<String, byte[]> auxFiles) throws Exception;
 
+	/**
+	 * Starts or resumes a chunked model upload. Data received for an upload id
+	 * is kept until the upload is finished, so an upload interrupted by a
+	 * dropped connection can be resumed with the same id.
+	 * 
+	 * @param uploadId  id of the upload, e.g. the {@link ModelHash} of the model
+	 * @param modelName asset name of the model
+	 * @see ModelUploader
+	 */
+	void beginModelUpload(String uploadId, String modelName) throws Exception;
+
+	/**
+	 * Appends a chunk to a file of a model upload
+	 * 
+	 * @param uploadId the upload id
+	 * @param fileName name of the aux file, or <code>null</code> for the DAE file
+	 * @param offset   uncompressed position of the chunk in the file
+	 * @param chunk    the chunk compressed with {@link java.util.zip.Deflater},
+	 *                 or <code>null</code> to query the received size
+	 * @return the number of bytes of the file received so far; the chunk is
+	 *         ignored if this differs from its offset
+	 */
+	long appendModelChunk(String uploadId, String fileName, long offset, byte[] chunk) throws Exception;
+
+	/**
+	 * Completes a model upload
+	 * 
+	 * @param uploadId    the upload id
+	 * @param contentHash the {@link ModelHash} of the model; the upload is
+	 *                    discarded if the received files do not match
+	 */
+	void finishModelUpload(String uploadId, String contentHash) throws Exception;
+
 	/**
 	 * Retrieves the root frame node
 	 * 
@@ -115,6 +168,51 @@ public interface VisualizationClientScene extends Remote {
 	 */
 	void removeRelation(int from, int to) throws Exception;
 
+	/**
+	 * Registers a structure of frames, relations and models which can be
+	 * instantiated many times with
+	 * {@link #instantiateTemplate(int, String[], int)}.
+	 * 
+	 * @param template the template; all its models must be available, and it
+	 *                 must not be changed afterwards
+	 * @return the template id
+	 * @throws Exception if an exception occurs, e.g. if a model is missing.
+	 */
+	int registerTemplate(SceneTemplate template) throws Exception;
+
+	/**
+	 * Creates instances of a registered template within one change set. Each
+	 * instance gets its own frames and relation poses, while the models share
+	 * their geometry.
+	 * 
+	 * @param templateId    the template id
+	 * @param instanceNames the instance names, prefixed to the frame names
+	 * @param parentFrame   the frame replacing {@link SceneTemplate#PARENT}
+	 * @return the frame ids, {@link SceneTemplate#getFrameCount()} per instance in
+	 *         the order of the names, see
+	 *         {@link SceneTemplate#getFrameId(int[], int, int, int)}
+	 * @throws Exception if an exception occurs.
+	 */
+	int[] instantiateTemplate(int templateId, String[] instanceNames, int parentFrame) throws Exception;
+
+	/**
+	 * Starts a transaction. All following edits are buffered until
+	 * {@link #commit()} is called and then become visible at once. Transactions
+	 * may be nested; only the outermost {@link #commit()} publishes the edits.
+	 * 
+	 * @throws Exception if an exception occurs.
+	 */
+	void beginTransaction() throws Exception;
+
+	/**
+	 * Commits the current transaction, publishing all edits buffered since
+	 * {@link #beginTransaction()} as one change set.
+	 * 
+	 * @throws Exception if an exception occurs, e.g. if no transaction is in
+	 *                   progress.
+	 */
+	void commit() throws Exception;
+
 	/**
 	 * Returns whether this scene is valid or not.
 	 * 
@@ -147,6 +245,19 @@ public interface VisualizationClientScene extends Remote {
 	void updateTransformation(int from, int to, double x, double y, double z, double a, double b, double c)
 			throws Exception;
 
+	/**
+	 * Updates the transformations of several relations at once, e.g. all joints
+	 * of a robot within one control cycle.
+	 * 
+	 * @param from  the ids of the parent frames
+	 * @param to    the ids of the child frames
+	 * @param poses the transformations, six values (x, y, z, a, b, c) per
+	 *              relation in the order given by <code>from</code> and
+	 *              <code>to</code>
+	 * @throws Exception if an exception occurs.
+	 */
+	void updateTransformations(int[] from, int[] to, double[] poses) throws Exception;
+
 	public double getTransparency(int id) throws Exception;
 
 	public double[] getColor(int id) throws Exception;
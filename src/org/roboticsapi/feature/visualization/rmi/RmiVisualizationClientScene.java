@@ -11,6 +11,7 @@ import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.util.Map;
 
+import org.roboticsapi.feature.visualization.SceneTemplate;
 import org.roboticsapi.feature.visualization.VisualizationClientScene;
 
 public interface RmiVisualizationClientScene extends VisualizationClientScene, Remote {
@@ -21,9 +22,21 @@ public interface RmiVisualizationClientScene extends VisualizationClientScene, R
 	@Override
 	boolean hasModel(String modelName) throws RemoteException;
 
+	@Override
+	String[] getMissingModels(Map<String, String> models, boolean preload) throws RemoteException;
+
 	@Override
 	void uploadModel(String modelName, byte[] modelData, Map<String, byte[]> auxFiles) throws RemoteException;
 
+	@Override
+	void beginModelUpload(String uploadId, String modelName) throws RemoteException;
+
+	@Override
+	long appendModelChunk(String uploadId, String fileName, long offset, byte[] chunk) throws RemoteException;
+
+	@Override
+	void finishModelUpload(String uploadId, String contentHash) throws RemoteException;
+
 	@Override
 	int addModel(String name, int frame, String modelName, double x, double y, double z, double a, double b, double c)
 			throws RemoteException;
@@ -57,10 +70,25 @@ public interface RmiVisualizationClientScene extends VisualizationClientScene, R
 	@Override
 	void removeRelation(int from, int to) throws RemoteException;
 
+	@Override
+	int registerTemplate(SceneTemplate template) throws RemoteException;
+
+	@Override
+	int[] instantiateTemplate(int templateId, String[] instanceNames, int parentFrame) throws RemoteException;
+
 	@Override
 	void updateTransformation(int from, int to, double x, double y, double z, double a, double b, double c)
 			throws RemoteException;
 
+	@Override
+	void updateTransformations(int[] from, int[] to, double[] poses) throws RemoteException;
+
+	@Override
+	void beginTransaction() throws RemoteException;
+
+	@Override
+	void commit() throws RemoteException;
+
 	@Override
 	boolean isValid() throws RemoteException;
 
@@ -0,0 +1,142 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. 
+ *
+ * Copyright 2010-2017 ISSE, University of Augsburg 
+ */
+
+package org.roboticsapi.feature.visualization.tcp;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Length-prefixed message framing of the binary TCP visualization protocol on
+ * top of a blocking {@link SocketChannel}. Send and receive buffers are reused
+ * between messages; callers sending messages from several threads have to
+ * synchronize on the channel while building, sending and (for calls) receiving
+ * a message.
+ * 
+ * @see TcpVisualizationProtocol
+ */
+public class TcpChannel implements Closeable {
+
+	private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+	private final SocketChannel channel;
+	private final ByteBuffer header = ByteBuffer.allocateDirect(4);
+	private ByteBuffer out = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+	private ByteBuffer in = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+
+	public TcpChannel(SocketChannel channel) throws IOException {
+		this.channel = channel;
+		channel.configureBlocking(true);
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+	}
+
+	/**
+	 * Starts a new request in the send buffer.
+	 * 
+	 * @param op          the operation
+	 * @param sceneId     the scene id
+	 * @param payloadSize upper bound for the size of the arguments
+	 * @return the send buffer, positioned after the request header
+	 */
+	public ByteBuffer beginRequest(byte op, int sceneId, int payloadSize) {
+		ensureCapacity(4 + TcpVisualizationProtocol.REQUEST_HEADER_SIZE + payloadSize);
+		out.clear();
+		out.putInt(0);
+		out.put(op);
+		out.putInt(sceneId);
+		return out;
+	}
+
+	/**
+	 * Starts a new reply in the send buffer.
+	 * 
+	 * @param status      the status
+	 * @param payloadSize upper bound for the size of the return value
+	 * @return the send buffer, positioned after the status
+	 */
+	public ByteBuffer beginReply(byte status, int payloadSize) {
+		ensureCapacity(4 + 1 + payloadSize);
+		out.clear();
+		out.putInt(0);
+		out.put(status);
+		return out;
+	}
+
+	private void ensureCapacity(int size) {
+		if (size > TcpVisualizationProtocol.MAX_MESSAGE_SIZE)
+			throw new IllegalArgumentException("Message too large: " + size + " bytes");
+		if (out.capacity() < size)
+			out = ByteBuffer.allocateDirect(Math.max(size, 2 * out.capacity()));
+	}
+
+	/**
+	 * Sends the message in the send buffer.
+	 */
+	public void send() throws IOException {
+		out.putInt(0, out.position() - 4);
+		out.flip();
+		while (out.hasRemaining())
+			channel.write(out);
+	}
+
+	/**
+	 * Sends the request in the send buffer and waits for the reply.
+	 * 
+	 * @return the reply's return value
+	 * @throws IOException if the connection fails or the receiver reports an
+	 *                     error
+	 */
+	public ByteBuffer call() throws IOException {
+		send();
+		ByteBuffer reply = receive();
+		if (reply.get() == TcpVisualizationProtocol.STATUS_ERROR)
+			throw new IOException(TcpVisualizationProtocol.getString(reply));
+		return reply;
+	}
+
+	/**
+	 * Blocks until the next message is received.
+	 * 
+	 * @return the receive buffer containing the message without its length
+	 *         prefix; valid until the next call
+	 */
+	public ByteBuffer receive() throws IOException {
+		header.clear();
+		readFully(header);
+		int length = header.getInt(0);
+		if (length < 0 || length > TcpVisualizationProtocol.MAX_MESSAGE_SIZE)
+			throw new IOException("Invalid message length " + length);
+		if (in.capacity() < length)
+			in = ByteBuffer.allocateDirect(Math.max(length, 2 * in.capacity()));
+		in.clear();
+		in.limit(length);
+		readFully(in);
+		in.flip();
+		return in;
+	}
+
+	private void readFully(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0)
+				throw new EOFException();
+		}
+	}
+
+	public boolean isOpen() {
+		return channel.isOpen();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+}
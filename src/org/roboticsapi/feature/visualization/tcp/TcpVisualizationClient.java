@@ -0,0 +1,79 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. 
+ *
+ * Copyright 2010-2017 ISSE, University of Augsburg 
+ */
+
+package org.roboticsapi.feature.visualization.tcp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import org.roboticsapi.feature.visualization.VisualizationClient;
+import org.roboticsapi.feature.visualization.VisualizationClientScene;
+
+/**
+ * A {@link VisualizationClient} connected over the binary TCP visualization
+ * protocol.
+ * 
+ * @see TcpVisualizationProtocol
+ */
+public class TcpVisualizationClient implements VisualizationClient, Closeable {
+
+	private final TcpChannel channel;
+
+	public TcpVisualizationClient(SocketChannel channel) throws IOException {
+		this.channel = new TcpChannel(channel);
+	}
+
+	@Override
+	public TcpVisualizationClientScene createScene() throws IOException {
+		return createScene("");
+	}
+
+	@Override
+	public TcpVisualizationClientScene createScene(String name) throws IOException {
+		return createScene(name, true);
+	}
+
+	/**
+	 * Creates a scene. The viewer does not support selecting 3D objects, so
+	 * <code>allowSelection</code> is not transmitted.
+	 */
+	@Override
+	public TcpVisualizationClientScene createScene(String name, boolean allowSelection) throws IOException {
+		synchronized (channel) {
+			ByteBuffer request = channel.beginRequest(TcpVisualizationProtocol.CREATE_SCENE, 0,
+					TcpVisualizationProtocol.sizeOf(name));
+			TcpVisualizationProtocol.putString(request, name);
+			int sceneId = channel.call().getInt();
+			return new TcpVisualizationClientScene(channel, sceneId);
+		}
+	}
+
+	@Override
+	public boolean deleteScene(VisualizationClientScene scene) throws IOException {
+		if (!(scene instanceof TcpVisualizationClientScene))
+			return false;
+		TcpVisualizationClientScene tcpScene = (TcpVisualizationClientScene) scene;
+		if (tcpScene.getChannel() != channel)
+			return false;
+		synchronized (channel) {
+			channel.beginRequest(TcpVisualizationProtocol.DELETE_SCENE, tcpScene.getSceneId(), 0);
+			return channel.call().get() != 0;
+		}
+	}
+
+	public boolean isConnected() {
+		return channel.isOpen();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+}
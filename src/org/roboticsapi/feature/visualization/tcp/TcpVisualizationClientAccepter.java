@@ -0,0 +1,73 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. 
+ *
+ * Copyright 2010-2017 ISSE, University of Augsburg 
+ */
+
+package org.roboticsapi.feature.visualization.tcp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import org.roboticsapi.feature.visualization.RAPILogger;
+
+/**
+ * Accepts visualization clients connecting over the binary TCP visualization
+ * protocol. This is the counterpart of
+ * {@link org.roboticsapi.feature.visualization.rmi.RmiVisualizationClientAccepter}
+ * and is announced with the server type
+ * {@link TcpVisualizationProtocol#TCP_SERVER_TYPE}.
+ */
+public class TcpVisualizationClientAccepter implements Closeable {
+
+	private final ServerSocketChannel serverChannel;
+	private final Thread thread;
+	private boolean alive = true;
+
+	/**
+	 * Starts accepting visualization clients.
+	 * 
+	 * @param port    the port to listen on, or 0 for any free port
+	 * @param onfound callback for each connected visualization client
+	 * @throws IOException if the port cannot be opened
+	 */
+	public TcpVisualizationClientAccepter(int port, OnFound onfound) throws IOException {
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.bind(new InetSocketAddress(port));
+		thread = new Thread(() -> run(onfound));
+		thread.setDaemon(true);
+		thread.setName("Robotics API tcp visualization accepter [" + getPort() + "]");
+		thread.start();
+	}
+
+	public int getPort() throws IOException {
+		return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+	}
+
+	private void run(OnFound onfound) {
+		while (alive) {
+			try {
+				SocketChannel channel = serverChannel.accept();
+				onfound.onRemoteVisualizationClientRegistered(new TcpVisualizationClient(channel));
+			} catch (IOException e) {
+				if (!alive || !serverChannel.isOpen())
+					return;
+				RAPILogger.logException(getClass(), e);
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		alive = false;
+		serverChannel.close();
+	}
+
+	public interface OnFound {
+		public void onRemoteVisualizationClientRegistered(TcpVisualizationClient client) throws IOException;
+	}
+}
@@ -0,0 +1,418 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. 
+ *
+ * Copyright 2010-2017 ISSE, University of Augsburg 
+ */
+
+package org.roboticsapi.feature.visualization.tcp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.roboticsapi.feature.visualization.SceneTemplate;
+import org.roboticsapi.feature.visualization.VisualizationClientScene;
+
+/**
+ * A {@link VisualizationClientScene} edited over the binary TCP visualization
+ * protocol. Pose updates are sent as fixed-width records indexed by the slot
+ * assigned to a relation when it was added.
+ * 
+ * @see TcpVisualizationProtocol
+ */
+public class TcpVisualizationClientScene implements VisualizationClientScene {
+
+	private final TcpChannel channel;
+	private final int sceneId;
+
+	/**
+	 * relation slots by (from, to)
+	 */
+	private final Map<Long, Integer> relationSlots = new HashMap<>();
+	private int nextSlot = 0;
+
+	/**
+	 * registered templates by id, needed for assigning the relation slots of
+	 * their instances
+	 */
+	private final Map<Integer, SceneTemplate> templates = new HashMap<>();
+
+	TcpVisualizationClientScene(TcpChannel channel, int sceneId) {
+		this.channel = channel;
+		this.sceneId = sceneId;
+	}
+
+	TcpChannel getChannel() {
+		return channel;
+	}
+
+	int getSceneId() {
+		return sceneId;
+	}
+
+	private static long relationKey(int from, int to) {
+		return ((long) from << 32) | (to & 0xffffffffL);
+	}
+
+	private ByteBuffer request(byte op, int payloadSize) {
+		return channel.beginRequest(op, sceneId, payloadSize);
+	}
+
+	@Override
+	public String getName() throws IOException {
+		synchronized (channel) {
+			request(TcpVisualizationProtocol.GET_NAME, 0);
+			return TcpVisualizationProtocol.getString(channel.call());
+		}
+	}
+
+	@Override
+	public int addModel(String name, int frame, String modelName, double x, double y, double z, double a, double b,
+			double c) throws IOException {
+		synchronized (channel) {
+			ByteBuffer request = request(TcpVisualizationProtocol.ADD_MODEL, TcpVisualizationProtocol.sizeOf(name) + 4
+					+ TcpVisualizationProtocol.sizeOf(modelName) + 6 * 8);
+			TcpVisualizationProtocol.putString(request, name);
+			request.putInt(frame);
+			TcpVisualizationProtocol.putString(request, modelName);
+			TcpVisualizationProtocol.putPose(request, x, y, z, a, b, c);
+			return channel.call().getInt();
+		}
+	}
+
+	private int addPrimitive(byte op, String name, int frame, double[] size, double x, double y, double z, double a,
+			double b, double c) throws IOException {
+		synchronized (channel) {
+			ByteBuffer request = request(op, TcpVisualizationProtocol.sizeOf(name) + 4 + size.length * 8 + 6 * 8);
+			TcpVisualizationProtocol.putString(request, name);
+			request.putInt(frame);
+			for (double s : size)
+				request.putDouble(s);
+			TcpVisualizationProtocol.putPose(request, x, y, z, a, b, c);
+			return channel.call().getInt();
+		}
+	}
+
+	@Override
+	public int addBox(String name, int frame, double sizeX, double sizeY, double sizeZ, double x, double y, double z,
+			double a, double b, double c) throws IOException {
+		return addPrimitive(TcpVisualizationProtocol.ADD_BOX, name, frame, new double[] { sizeX, sizeY, sizeZ }, x, y,
+				z, a, b, c);
+	}
+
+	@Override
+	public int addSphere(String name, int frame, double radius, double x, double y, double z, double a, double b,
+			double c) throws IOException {
+		return addPrimitive(TcpVisualizationProtocol.ADD_SPHERE, name, frame, new double[] { radius }, x, y, z, a, b,
+				c);
+	}
+
+	@Override
+	public int addCylinder(String name, int frame, double radius, double height, double x, double y, double z,
+			double a, double b, double c) throws IOException {
+		return addPrimitive(TcpVisualizationProtocol.ADD_CYLINDER, name, frame, new double[] { radius, height }, x, y,
+				z, a, b, c);
+	}
+
+	@Override
+	public int addCapsule(String name, int frame, double radius, double height, double x, double y, double z,
+			double a, double b, double c) throws IOException {
+		return addPrimitive(TcpVisualizationProtocol.ADD_CAPSULE, name, frame, new double[] { radius, height }, x, y,
+				z, a, b, c);
+	}
+
+	@Override
+	public boolean hasModel(String modelName) throws IOException {
+		synchronized (channel) {
+			ByteBuffer request = request(TcpVisualizationProtocol.HAS_MODEL,
+					TcpVisualizationProtocol.sizeOf(modelName));
+			TcpVisualizationProtocol.putString(request, modelName);
+			return channel.call().get() != 0;
+		}
+	}
+
+	@Override
+	public String[] getMissingModels(Map<String, String> models, boolean preload) throws IOException {
+		int size = 4 + 1;
+		for (Map.Entry<String, String> model : models.entrySet())
+			size += TcpVisualizationProtocol.sizeOf(model.getKey()) + TcpVisualizationProtocol.sizeOf(model.getValue());
+		synchronized (channel) {
+			ByteBuffer request = request(TcpVisualizationProtocol.GET_MISSING_MODELS, size);
+			request.putInt(models.size());
+			for (Map.Entry<String, String> model : models.entrySet()) {
+				TcpVisualizationProtocol.putString(request, model.getKey());
+				TcpVisualizationProtocol.putString(request, model.getValue());
+			}
+			request.put((byte) (preload ? 1 : 0));
+			ByteBuffer reply = channel.call();
+			String[] result = new String[reply.getInt()];
+			for (int i = 0; i < result.length; i++)
+				result[i] = TcpVisualizationProtocol.getString(reply);
+			return result;
+		}
+	}
+
+	@Override
+	public void uploadModel(String modelName, byte[] modelData, Map<String, byte[]> auxFiles) throws IOException {
+		int size = TcpVisualizationProtocol.sizeOf(modelName) + TcpVisualizationProtocol.sizeOf(modelData) + 4;
+		if (auxFiles != null) {
+			for (Map.Entry<String, byte[]> aux : auxFiles.entrySet())
+				size += TcpVisualizationProtocol.sizeOf(aux.getKey()) + TcpVisualizationProtocol.sizeOf(aux.getValue());
+		}
+		synchronized (channel) {
+			ByteBuffer request = request(TcpVisualizationProtocol.UPLOAD_MODEL, size);
+			TcpVisualizationProtocol.putString(request, modelName);
+			TcpVisualizationProtocol.putBytes(request, modelData);
+			if (auxFiles == null) {
+				request.putInt(0);
+			} else {
+				request.putInt(auxFiles.size());
+				for (Map.Entry<String, byte[]> aux : auxFiles.entrySet()) {
+					TcpVisualizationProtocol.putString(request, aux.getKey());
+					TcpVisualizationProtocol.putBytes(request, aux.getValue());
+				}
+			}
+			channel.call();
+		}
+	}
+
+	@Override
+	public void beginModelUpload(String uploadId, String modelName) throws IOException {
+		synchronized (channel) {
+			ByteBuffer request = request(TcpVisualizationProtocol.BEGIN_MODEL_UPLOAD,
+					TcpVisualizationProtocol.sizeOf(uploadId) + TcpVisualizationProtocol.sizeOf(modelName));
+			TcpVisualizationProtocol.putString(request, uploadId);
+			TcpVisualizationProtocol.putString(request, modelName);
+			channel.call();
+		}
+	}
+
+	@Override
+	public long appendModelChunk(String uploadId, String fileName, long offset, byte[] chunk) throws IOException {
+		synchronized (channel) {
+			ByteBuffer request = request(TcpVisualizationProtocol.APPEND_MODEL_CHUNK,
+					TcpVisualizationProtocol.sizeOf(uploadId) + TcpVisualizationProtocol.sizeOf(fileName) + 8
+							+ TcpVisualizationProtocol.sizeOf(chunk));
+			TcpVisualizationProtocol.putString(request, uploadId);
+			TcpVisualizationProtocol.putString(request, fileName);
+			request.putLong(offset);
+			TcpVisualizationProtocol.putBytes(request, chunk);
+			return channel.call().getLong();
+		}
+	}
+
+	@Override
+	public void finishModelUpload(String uploadId, String contentHash) throws IOException {
+		synchronized (channel) {
+			ByteBuffer request = request(TcpVisualizationProtocol.FINISH_MODEL_UPLOAD,
+					TcpVisualizationProtocol.sizeOf(uploadId) + TcpVisualizationProtocol.sizeOf(contentHash));
+			TcpVisualizationProtocol.putString(request, uploadId);
+			TcpVisualizationProtocol.putString(request, contentHash);
+			channel.call();
+		}
+	}
+
+	@Override
+	public int getRootFrame() throws IOException {
+		synchronized (channel) {
+			request(TcpVisualizationProtocol.GET_ROOT_FRAME, 0);
+			return channel.call().getInt();
+		}
+	}
+
+	@Override
+	public int addFrame(String name) throws IOException {
+		synchronized (channel) {
+			ByteBuffer request = request(TcpVisualizationProtocol.ADD_FRAME, TcpVisualizationProtocol.sizeOf(name));
+			TcpVisualizationProtocol.putString(request, name);
+			return channel.call().getInt();
+		}
+	}
+
+	@Override
+	public void removeFrame(int nodeID) throws IOException {
+		synchronized (channel) {
+			request(TcpVisualizationProtocol.REMOVE_FRAME, 4).putInt(nodeID);
+			channel.send();
+		}
+	}
+
+	@Override
+	public void addRelation(int from, int to, double x, double y, double z, double a, double b, double c)
+			throws IOException {
+		synchronized (channel) {
+			int slot = relationSlots.computeIfAbsent(relationKey(from, to), k -> nextSlot++);
+			ByteBuffer request = request(TcpVisualizationProtocol.ADD_RELATION, 3 * 4 + 6 * 8);
+			request.putInt(slot).putInt(from).putInt(to);
+			TcpVisualizationProtocol.putPose(request, x, y, z, a, b, c);
+			channel.send();
+		}
+	}
+
+	@Override
+	public void removeRelation(int from, int to) throws IOException {
+		synchronized (channel) {
+			relationSlots.remove(relationKey(from, to));
+			request(TcpVisualizationProtocol.REMOVE_RELATION, 2 * 4).putInt(from).putInt(to);
+			channel.send();
+		}
+	}
+
+	@Override
+	public int registerTemplate(SceneTemplate template) throws IOException {
+		synchronized (channel) {
+			ByteBuffer request = request(TcpVisualizationProtocol.REGISTER_TEMPLATE,
+					TcpVisualizationProtocol.sizeOf(template));
+			TcpVisualizationProtocol.putTemplate(request, template);
+			int id = channel.call().getInt();
+			templates.put(id, template);
+			return id;
+		}
+	}
+
+	@Override
+	public int[] instantiateTemplate(int templateId, String[] instanceNames, int parentFrame) throws IOException {
+		int size = 3 * 4 + 4;
+		for (String name : instanceNames)
+			size += TcpVisualizationProtocol.sizeOf(name);
+		synchronized (channel) {
+			SceneTemplate template = templates.get(templateId);
+			if (template == null)
+				throw new IllegalArgumentException("Unknown template " + templateId);
+			// the instance relations use consecutive slots starting at the first one
+			int firstSlot = nextSlot;
+			ByteBuffer request = request(TcpVisualizationProtocol.INSTANTIATE_TEMPLATE, size);
+			request.putInt(templateId).putInt(parentFrame).putInt(firstSlot);
+			request.putInt(instanceNames.length);
+			for (String name : instanceNames)
+				TcpVisualizationProtocol.putString(request, name);
+			ByteBuffer reply = channel.call();
+			int[] frameIds = new int[reply.getInt()];
+			for (int i = 0; i < frameIds.length; i++)
+				frameIds[i] = reply.getInt();
+
+			for (int i = 0; i < instanceNames.length; i++) {
+				for (int r = 0; r < template.getRelationCount(); r++) {
+					int from = template.getFrameId(frameIds, i, template.getRelationFrom(r), parentFrame);
+					int to = template.getFrameId(frameIds, i, template.getRelationTo(r), parentFrame);
+					relationSlots.put(relationKey(from, to), nextSlot++);
+				}
+			}
+			return frameIds;
+		}
+	}
+
+	@Override
+	public void updateTransformation(int from, int to, double x, double y, double z, double a, double b, double c)
+			throws IOException {
+		updateTransformations(new int[] { from }, new int[] { to }, new double[] { x, y, z, a, b, c });
+	}
+
+	@Override
+	public void updateTransformations(int[] from, int[] to, double[] poses) throws IOException {
+		if (from.length != to.length || poses.length != 6 * from.length)
+			throw new IllegalArgumentException(
+					"Expected 6 pose values per relation, got " + poses.length + " for " + from.length + " relations");
+		synchronized (channel) {
+			int[] slots = new int[from.length];
+			for (int i = 0; i < from.length; i++) {
+				Integer slot = relationSlots.get(relationKey(from[i], to[i]));
+				if (slot == null)
+					throw new IllegalArgumentException("Unknown relation from " + from[i] + " to " + to[i]);
+				slots[i] = slot;
+			}
+			ByteBuffer request = request(TcpVisualizationProtocol.UPDATE_POSES,
+					4 + from.length * TcpVisualizationProtocol.POSE_RECORD_SIZE);
+			request.putInt(from.length);
+			for (int i = 0; i < from.length; i++) {
+				request.putInt(slots[i]);
+				for (int p = 6 * i; p < 6 * i + 6; p++)
+					request.putFloat((float) poses[p]);
+			}
+			channel.send();
+		}
+	}
+
+	@Override
+	public void beginTransaction() throws IOException {
+		synchronized (channel) {
+			request(TcpVisualizationProtocol.BEGIN_TRANSACTION, 0);
+			channel.send();
+		}
+	}
+
+	@Override
+	public void commit() throws IOException {
+		synchronized (channel) {
+			request(TcpVisualizationProtocol.COMMIT, 0);
+			channel.send();
+		}
+	}
+
+	@Override
+	public boolean isValid() throws IOException {
+		synchronized (channel) {
+			request(TcpVisualizationProtocol.IS_VALID, 0);
+			return channel.call().get() != 0;
+		}
+	}
+
+	@Override
+	public void highlight() throws IOException {
+		synchronized (channel) {
+			request(TcpVisualizationProtocol.HIGHLIGHT, 0);
+			channel.send();
+		}
+	}
+
+	@Override
+	public double getTransparency(int id) throws IOException {
+		synchronized (channel) {
+			request(TcpVisualizationProtocol.GET_TRANSPARENCY, 4).putInt(id);
+			return channel.call().getDouble();
+		}
+	}
+
+	@Override
+	public double[] getColor(int id) throws IOException {
+		synchronized (channel) {
+			request(TcpVisualizationProtocol.GET_COLOR, 4).putInt(id);
+			ByteBuffer reply = channel.call();
+			int length = reply.getInt();
+			if (length < 0)
+				return null;
+			double[] color = new double[length];
+			for (int i = 0; i < length; i++)
+				color[i] = reply.getDouble();
+			return color;
+		}
+	}
+
+	@Override
+	public void setTransparency(int id, double value) throws IOException {
+		synchronized (channel) {
+			request(TcpVisualizationProtocol.SET_TRANSPARENCY, 4 + 8).putInt(id).putDouble(value);
+			channel.send();
+		}
+	}
+
+	@Override
+	public void setColor(int id, double r, double g, double b) throws IOException {
+		synchronized (channel) {
+			request(TcpVisualizationProtocol.SET_COLOR, 4 + 3 * 8).putInt(id).putDouble(r).putDouble(g).putDouble(b);
+			channel.send();
+		}
+	}
+
+	@Override
+	public void setScale(int id, double sx, double sy, double sz) throws IOException {
+		synchronized (channel) {
+			request(TcpVisualizationProtocol.SET_SCALE, 4 + 3 * 8).putInt(id).putDouble(sx).putDouble(sy)
+					.putDouble(sz);
+			channel.send();
+		}
+	}
+
+}
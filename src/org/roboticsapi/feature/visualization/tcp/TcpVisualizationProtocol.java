@@ -0,0 +1,222 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. 
+ *
+ * Copyright 2010-2017 ISSE, University of Augsburg 
+ */
+
+package org.roboticsapi.feature.visualization.tcp;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.roboticsapi.feature.visualization.SceneTemplate;
+
+/**
+ * Constants and encoding helpers of the binary TCP visualization protocol.
+ * 
+ * Every message is prefixed by its length (int, not including the prefix).
+ * Requests continue with the operation (byte) and the scene id (int) followed
+ * by the operation's arguments. Replies are only sent for operations which
+ * return a value (see {@link #expectsReply(byte)}) and continue with a status
+ * byte followed by the return value or an error message. If an operation
+ * without reply fails, the receiver answers the next operation with reply with
+ * that error instead of executing it.
+ * 
+ * Pose updates are sent as fixed-width records of {@link #POSE_RECORD_SIZE}
+ * bytes, each consisting of the relation slot (int) and x, y, z, a, b, c
+ * (float). Relation slots are assigned by the sender when adding a relation.
+ */
+public final class TcpVisualizationProtocol {
+
+	public static final String TCP_SERVER_TYPE = "tcp";
+
+	public static final int MAX_MESSAGE_SIZE = 1 << 30;
+
+	public static final byte CREATE_SCENE = 1;
+	public static final byte DELETE_SCENE = 2;
+	public static final byte GET_NAME = 3;
+	public static final byte ADD_MODEL = 4;
+	public static final byte ADD_BOX = 5;
+	public static final byte ADD_SPHERE = 6;
+	public static final byte ADD_CYLINDER = 7;
+	public static final byte ADD_CAPSULE = 8;
+	public static final byte HAS_MODEL = 9;
+	public static final byte UPLOAD_MODEL = 10;
+	public static final byte GET_ROOT_FRAME = 11;
+	public static final byte ADD_FRAME = 12;
+	public static final byte REMOVE_FRAME = 13;
+	public static final byte ADD_RELATION = 14;
+	public static final byte REMOVE_RELATION = 15;
+	public static final byte UPDATE_POSES = 16;
+	public static final byte BEGIN_TRANSACTION = 17;
+	public static final byte COMMIT = 18;
+	public static final byte IS_VALID = 19;
+	public static final byte HIGHLIGHT = 20;
+	public static final byte GET_TRANSPARENCY = 21;
+	public static final byte GET_COLOR = 22;
+	public static final byte SET_TRANSPARENCY = 23;
+	public static final byte SET_COLOR = 24;
+	public static final byte SET_SCALE = 25;
+	public static final byte BEGIN_MODEL_UPLOAD = 26;
+	public static final byte APPEND_MODEL_CHUNK = 27;
+	public static final byte FINISH_MODEL_UPLOAD = 28;
+	public static final byte GET_MISSING_MODELS = 29;
+	public static final byte REGISTER_TEMPLATE = 30;
+	public static final byte INSTANTIATE_TEMPLATE = 31;
+
+	public static final byte STATUS_OK = 0;
+	public static final byte STATUS_ERROR = 1;
+
+	/**
+	 * size of a request header: operation and scene id
+	 */
+	public static final int REQUEST_HEADER_SIZE = 1 + 4;
+
+	/**
+	 * size of a pose record: relation slot and six floats
+	 */
+	public static final int POSE_RECORD_SIZE = 4 + 6 * 4;
+
+	private TcpVisualizationProtocol() {
+	}
+
+	/**
+	 * Checks whether the receiver answers the given operation. All other
+	 * operations are fire and forget; their errors are reported with the reply
+	 * to the next operation.
+	 * 
+	 * @param op the operation
+	 * @return <code>true</code> if a reply is sent
+	 */
+	public static boolean expectsReply(byte op) {
+		switch (op) {
+		case REMOVE_FRAME:
+		case ADD_RELATION:
+		case REMOVE_RELATION:
+		case UPDATE_POSES:
+		case BEGIN_TRANSACTION:
+		case COMMIT:
+		case HIGHLIGHT:
+		case SET_TRANSPARENCY:
+		case SET_COLOR:
+		case SET_SCALE:
+			return false;
+		default:
+			return true;
+		}
+	}
+
+	/**
+	 * Returns an upper bound for the encoded size of a string.
+	 */
+	public static int sizeOf(String text) {
+		return 4 + (text == null ? 0 : 3 * text.length());
+	}
+
+	public static void putString(ByteBuffer buffer, String text) {
+		if (text == null) {
+			buffer.putInt(-1);
+			return;
+		}
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		buffer.putInt(bytes.length);
+		buffer.put(bytes);
+	}
+
+	public static String getString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0)
+			return null;
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	public static int sizeOf(byte[] data) {
+		return 4 + (data == null ? 0 : data.length);
+	}
+
+	public static void putBytes(ByteBuffer buffer, byte[] data) {
+		if (data == null) {
+			buffer.putInt(-1);
+			return;
+		}
+		buffer.putInt(data.length);
+		buffer.put(data);
+	}
+
+	public static byte[] getBytes(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0)
+			return null;
+		byte[] data = new byte[length];
+		buffer.get(data);
+		return data;
+	}
+
+	public static void putPose(ByteBuffer buffer, double x, double y, double z, double a, double b, double c) {
+		buffer.putDouble(x).putDouble(y).putDouble(z).putDouble(a).putDouble(b).putDouble(c);
+	}
+
+	private static void putPose(ByteBuffer buffer, double[] pose) {
+		putPose(buffer, pose[0], pose[1], pose[2], pose[3], pose[4], pose[5]);
+	}
+
+	private static double[] getPose(ByteBuffer buffer) {
+		double[] pose = new double[6];
+		for (int i = 0; i < 6; i++)
+			pose[i] = buffer.getDouble();
+		return pose;
+	}
+
+	/**
+	 * Returns an upper bound for the encoded size of a template.
+	 */
+	public static int sizeOf(SceneTemplate template) {
+		int size = 3 * 4 + template.getRelationCount() * (2 * 4 + 6 * 8);
+		for (int i = 0; i < template.getFrameCount(); i++)
+			size += sizeOf(template.getFrameName(i));
+		for (int i = 0; i < template.getModelCount(); i++)
+			size += sizeOf(template.getModelName(i)) + 4 + sizeOf(template.getModelAsset(i)) + 6 * 8;
+		return size;
+	}
+
+	public static void putTemplate(ByteBuffer buffer, SceneTemplate template) {
+		buffer.putInt(template.getFrameCount());
+		for (int i = 0; i < template.getFrameCount(); i++)
+			putString(buffer, template.getFrameName(i));
+		buffer.putInt(template.getRelationCount());
+		for (int i = 0; i < template.getRelationCount(); i++) {
+			buffer.putInt(template.getRelationFrom(i)).putInt(template.getRelationTo(i));
+			putPose(buffer, template.getRelationPose(i));
+		}
+		buffer.putInt(template.getModelCount());
+		for (int i = 0; i < template.getModelCount(); i++) {
+			putString(buffer, template.getModelName(i));
+			buffer.putInt(template.getModelFrame(i));
+			putString(buffer, template.getModelAsset(i));
+			putPose(buffer, template.getModelPose(i));
+		}
+	}
+
+	public static SceneTemplate getTemplate(ByteBuffer buffer) {
+		SceneTemplate template = new SceneTemplate();
+		for (int i = buffer.getInt(); i > 0; i--)
+			template.addFrame(getString(buffer));
+		for (int i = buffer.getInt(); i > 0; i--) {
+			int from = buffer.getInt(), to = buffer.getInt();
+			double[] p = getPose(buffer);
+			template.addRelation(from, to, p[0], p[1], p[2], p[3], p[4], p[5]);
+		}
+		for (int i = buffer.getInt(); i > 0; i--) {
+			String name = getString(buffer);
+			int frame = buffer.getInt();
+			String modelName = getString(buffer);
+			double[] p = getPose(buffer);
+			template.addModel(name, frame, modelName, p[0], p[1], p[2], p[3], p[4], p[5]);
+		}
+		return template;
+	}
+
+}
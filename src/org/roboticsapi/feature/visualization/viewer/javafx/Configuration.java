@@ -17,6 +17,9 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Properties;
 
+import org.roboticsapi.feature.visualization.viewer.javafx.model.ModelStore;
+import org.roboticsapi.feature.visualization.viewer.javafx.model.RemoteSceneImpl.SceneGraphMode;
+import org.roboticsapi.feature.visualization.viewer.javafx.nodes.ThumbnailService;
 import org.roboticsapi.feature.visualization.viewer.javafx.view.CameraProperties;
 import org.roboticsapi.feature.visualization.viewer.navigation.engine.NavigationProperties;
 import org.roboticsapi.feature.visualization.viewer.navigation.event.EventListener.KeyButton;
@@ -34,7 +37,8 @@ public final class Configuration extends Properties
 
 	public static enum Action {
 		MOVE_UP, MOVE_DOWN, MOVE_LEFT, MOVE_RIGHT, MOVE_FORWARD, MOVE_BACKWARD, ROTATE_LOOK, ROTATE_ORBIT, FOCUS, PAN,
-		MOVEMENT_SPEED, ZOOM_SPEED, ANGULAR_SPEED, OBSERVED_HOSTS, WINDOW_BOUNDS, WINDOW_MAXIMIZED, CAMERA_STARTPOSITION
+		MOVEMENT_SPEED, ZOOM_SPEED, ANGULAR_SPEED, OBSERVED_HOSTS, WINDOW_BOUNDS, WINDOW_MAXIMIZED, CAMERA_STARTPOSITION,
+		SCENE_GRAPH_MODE, MODEL_STORE_BUDGET, THUMBNAIL_BUDGET
 	}
 
 	public Configuration(File file) {
@@ -67,6 +71,15 @@ public final class Configuration extends Properties
 		p.setProperty(Action.WINDOW_BOUNDS.name(), "");
 		p.setProperty(Action.WINDOW_MAXIMIZED.name(), "false");
 
+		// Scene properties
+		p.setProperty(Action.SCENE_GRAPH_MODE.name(), SceneGraphMode.FLAT.name());
+
+		// Model store properties (MiB)
+		p.setProperty(Action.MODEL_STORE_BUDGET.name(), "" + ModelStore.DEFAULT_BUDGET / (1024 * 1024));
+
+		// Thumbnail properties (ms per pulse)
+		p.setProperty(Action.THUMBNAIL_BUDGET.name(), "" + ThumbnailService.DEFAULT_BUDGET);
+
 		return p;
 	}
 
@@ -303,6 +316,53 @@ public final class Configuration extends Properties
 		storeToFile();
 	}
 
+	public SceneGraphMode getSceneGraphMode() {
+		String result = getProperty(Action.SCENE_GRAPH_MODE.name());
+		try {
+			return SceneGraphMode.valueOf(result);
+		} catch (Exception e) {
+			return SceneGraphMode.FLAT;
+		}
+	}
+
+	public void setSceneGraphMode(SceneGraphMode sceneGraphMode) {
+		setProperty(Action.SCENE_GRAPH_MODE.name(), sceneGraphMode.name());
+		storeToFile();
+	}
+
+	/**
+	 * Returns the disk budget of the model store in bytes.
+	 */
+	public long getModelStoreBudget() {
+		String result = getProperty(Action.MODEL_STORE_BUDGET.name());
+		try {
+			return Long.parseLong(result) * 1024 * 1024;
+		} catch (Exception e) {
+			return ModelStore.DEFAULT_BUDGET;
+		}
+	}
+
+	public void setModelStoreBudget(long bytes) {
+		setProperty(Action.MODEL_STORE_BUDGET.name(), "" + bytes / (1024 * 1024));
+		storeToFile();
+	}
+
+	/**
+	 * Returns the time in milliseconds thumbnails may be rendered per pulse.
+	 */
+	public double getThumbnailBudget() {
+		String result = getProperty(Action.THUMBNAIL_BUDGET.name());
+		try {
+			return Double.parseDouble(result);
+		} catch (Exception e) {
+			return ThumbnailService.DEFAULT_BUDGET;
+		}
+	}
+
+	public void setThumbnailBudget(double milliseconds) {
+		setDouble(Action.THUMBNAIL_BUDGET, milliseconds);
+	}
+
 	@Override
 	public CameraPosition getCameraStartposition() {
 		String result = getProperty(Action.CAMERA_STARTPOSITION.name());
@@ -8,9 +8,15 @@
 package org.roboticsapi.feature.visualization.viewer.javafx;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.function.BiFunction;
 
+import org.roboticsapi.feature.visualization.RAPILogger;
 import org.roboticsapi.feature.visualization.viewer.javafx.Configuration.Action;
+import org.roboticsapi.feature.visualization.viewer.javafx.model.ModelStore;
+import org.roboticsapi.feature.visualization.viewer.javafx.model.SceneJournal;
+import org.roboticsapi.feature.visualization.viewer.javafx.model.SceneJournalPlayer;
+import org.roboticsapi.feature.visualization.viewer.javafx.nodes.JournalReplayPane;
 import org.roboticsapi.feature.visualization.viewer.javafx.nodes.RapiVisualizationPane;
 import org.roboticsapi.feature.visualization.viewer.javafx.view.CameraProperties;
 import org.roboticsapi.feature.visualization.viewer.javafx.view.CameraProperties.CameraPosition;
@@ -48,6 +54,8 @@ import javafx.scene.image.Image;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.BorderPane;
 import javafx.stage.DirectoryChooser;
+import javafx.stage.FileChooser;
+import javafx.stage.FileChooser.ExtensionFilter;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 
@@ -61,6 +69,7 @@ public class RoboticsApiVisualization extends Application {
 	@Override
 	public void start(Stage primaryStage) throws Exception {
 		Configuration configuration = new Configuration(new File("rapivis.config"));
+		ModelStore.setInstance(new ModelStore(ModelStore.getDefaultRoot(), configuration.getModelStoreBudget()));
 
 		RapiVisualizationPane viewer = new RapiVisualizationPane(RapiVisualizationPane.DISPLAY_MODE.VERTICAL_SPLIT,
 				configuration);
@@ -103,7 +112,16 @@ public class RoboticsApiVisualization extends Application {
 		exit.setOnAction(e -> {
 			Platform.exit();
 		});
-		menuFile.getItems().addAll(exit);
+		MenuItem replay = new MenuItem("Replay Journal...");
+		replay.setOnAction(e -> {
+			FileChooser chooser = new FileChooser();
+			chooser.getExtensionFilters()
+					.add(new ExtensionFilter("Scene journals", "*" + SceneJournal.FILE_EXTENSION));
+			File file = chooser.showOpenDialog(parentStage);
+			if (file != null)
+				showJournalReplay(parentStage, file, configuration);
+		});
+		menuFile.getItems().addAll(replay, exit);
 		Menu window = new Menu("Window");
 		MenuItem preferences = new MenuItem("Preferences");
 		preferences.setOnAction(e -> {
@@ -117,11 +135,26 @@ public class RoboticsApiVisualization extends Application {
 
 		MenuItem record = new MenuItem("Record View...");
 		record.setOnAction(e -> {
+			if (viewer.getRecordStatistics() != null) {
+				viewer.setRecordPath(null);
+				return;
+			}
 			DirectoryChooser chooser = new DirectoryChooser();
 			File path = chooser.showDialog(parentStage);
 			viewer.setRecordPath(path == null ? null : path.getAbsolutePath());
 		});
-		window.getItems().addAll(preferences, frames, record);
+		window.setOnShowing(e -> {
+			String statistics = viewer.getRecordStatistics();
+			record.setText(statistics == null ? "Record View..." : "Stop Recording (" + statistics + ")");
+		});
+
+		MenuItem journal = new MenuItem("Record Journals...");
+		journal.setOnAction(e -> {
+			DirectoryChooser chooser = new DirectoryChooser();
+			File path = chooser.showDialog(parentStage);
+			viewer.setJournalPath(path == null ? null : path.getAbsolutePath());
+		});
+		window.getItems().addAll(preferences, frames, record, journal);
 
 		Menu help = new Menu("Help");
 		MenuItem about = new MenuItem("About...");
@@ -134,6 +167,24 @@ public class RoboticsApiVisualization extends Application {
 		return menuBar;
 	}
 
+	private void showJournalReplay(Stage parentStage, File file, Configuration configuration) {
+		SceneJournalPlayer player;
+		try {
+			player = new SceneJournalPlayer(file.toPath(), configuration.getSceneGraphMode());
+		} catch (IOException e) {
+			RAPILogger.logException(getClass(), e);
+			return;
+		}
+		JournalReplayPane pane = new JournalReplayPane(player, configuration);
+		Stage stage = new Stage();
+		stage.initOwner(parentStage);
+		stage.setTitle(file.getName());
+		stage.setScene(new Scene(pane, 900, 600));
+		stage.getIcons().addAll(parentStage.getIcons());
+		stage.setOnHidden(e -> pane.dispose());
+		stage.show();
+	}
+
 	private void showPreferencesPage(Stage parentStage, Configuration configuration) {
 		Stage dialog = new Stage();
 		dialog.initOwner(parentStage);
@@ -13,7 +13,8 @@ import java.util.List;
 import org.roboticsapi.feature.visualization.LookupClient;
 import org.roboticsapi.feature.visualization.RAPILogger;
 import org.roboticsapi.feature.visualization.RapiInfo;
-import org.roboticsapi.feature.visualization.rmi.RmiVisualizationClientAccepterImpl;
+import org.roboticsapi.feature.visualization.rmi.RmiVisualizationClientAccepter;
+import org.roboticsapi.feature.visualization.tcp.TcpVisualizationProtocol;
 
 public class FxLookupClient extends LookupClient {
 
@@ -39,7 +40,8 @@ public class FxLookupClient extends LookupClient {
 		List<Application> newInstances = new ArrayList<>();
 
 		for (RapiInfo newServer : servers) {
-			if (!RmiVisualizationClientAccepterImpl.RMI_SERVER_TYPE.equals(newServer.type))
+			if (!RmiVisualizationClientAccepter.RMI_SERVER_TYPE.equals(newServer.type)
+					&& !TcpVisualizationProtocol.TCP_SERVER_TYPE.equals(newServer.type))
 				continue;
 
 			boolean found = false;
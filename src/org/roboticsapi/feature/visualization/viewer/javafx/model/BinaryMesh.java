@@ -0,0 +1,424 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. 
+ *
+ * Copyright 2010-2017 ISSE, University of Augsburg 
+ */
+
+package org.roboticsapi.feature.visualization.viewer.javafx.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javafx.geometry.Point3D;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Material;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.CullFace;
+import javafx.scene.shape.DrawMode;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+import javafx.scene.shape.VertexFormat;
+import javafx.scene.transform.Affine;
+import javafx.scene.transform.Transform;
+
+/**
+ * Binary file format for imported models, holding the meshes, materials and
+ * node hierarchy produced by the Collada importer. Files are written once per
+ * model and loaded into a buffer whose float and int views are copied into
+ * the {@link TriangleMesh} arrays, which avoids parsing the XML again.
+ * 
+ * All values are little endian and 4-byte aligned. The file starts with
+ * {@link #MAGIC} and {@link #VERSION}, followed by the materials, the meshes
+ * and the root nodes. Textures are referenced by URL. Mesh views refer to
+ * materials and meshes by index, including the meshes of their {@link LodMesh}
+ * levels.
+ */
+public final class BinaryMesh {
+
+	public static final int MAGIC = 0x48534d52; // "RMSH"
+	public static final int VERSION = 2;
+
+	private static final int GROUP = 0;
+	private static final int MESH_VIEW = 1;
+
+	private BinaryMesh() {
+	}
+
+	/**
+	 * Writes the given nodes. The file is replaced atomically, so readers never
+	 * see a partially written file.
+	 * 
+	 * @throws IllegalArgumentException if the nodes contain something other than
+	 *                                  groups and mesh views with triangle
+	 *                                  meshes and phong materials
+	 */
+	public static void write(Node[] nodes, Path file) throws IOException {
+		Map<Material, Integer> materials = new IdentityHashMap<>();
+		Map<TriangleMesh, Integer> meshes = new IdentityHashMap<>();
+		List<Material> materialList = new ArrayList<>();
+		List<TriangleMesh> meshList = new ArrayList<>();
+		for (Node node : nodes)
+			collect(node, materials, materialList, meshes, meshList);
+
+		Path temp = file.resolveSibling(file.getFileName() + "." + UUID.randomUUID() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+			Output out = new Output(channel);
+			out.putInt(MAGIC);
+			out.putInt(VERSION);
+			out.putInt(materialList.size());
+			for (Material material : materialList)
+				writeMaterial(out, (PhongMaterial) material);
+			out.putInt(meshList.size());
+			for (TriangleMesh mesh : meshList)
+				writeMesh(out, mesh);
+			out.putInt(nodes.length);
+			for (Node node : nodes)
+				writeNode(out, node, materials, meshes);
+			out.flush();
+			channel.force(false);
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+		Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static void collect(Node node, Map<Material, Integer> materials, List<Material> materialList,
+			Map<TriangleMesh, Integer> meshes, List<TriangleMesh> meshList) {
+		if (node instanceof MeshView) {
+			MeshView meshView = (MeshView) node;
+			if (!(meshView.getMesh() instanceof TriangleMesh))
+				throw new IllegalArgumentException("Unsupported mesh " + meshView.getMesh());
+			Material material = meshView.getMaterial();
+			if (material != null && !(material instanceof PhongMaterial))
+				throw new IllegalArgumentException("Unsupported material " + material);
+			if (material != null && !materials.containsKey(material)) {
+				materials.put(material, materialList.size());
+				materialList.add(material);
+			}
+			LodMesh lod = LodMesh.get(meshView);
+			TriangleMesh[] levels = lod != null ? lod.getLevels()
+					: new TriangleMesh[] { (TriangleMesh) meshView.getMesh() };
+			for (TriangleMesh mesh : levels) {
+				if (!meshes.containsKey(mesh)) {
+					meshes.put(mesh, meshList.size());
+					meshList.add(mesh);
+				}
+			}
+		} else if (node instanceof Group) {
+			for (Node child : ((Group) node).getChildren())
+				collect(child, materials, materialList, meshes, meshList);
+		} else {
+			throw new IllegalArgumentException("Unsupported node " + node);
+		}
+	}
+
+	private static void writeMaterial(Output out, PhongMaterial material) throws IOException {
+		writeColor(out, material.getDiffuseColor());
+		writeColor(out, material.getSpecularColor());
+		out.putDouble(material.getSpecularPower());
+		writeImage(out, material.getDiffuseMap());
+		writeImage(out, material.getSpecularMap());
+		writeImage(out, material.getBumpMap());
+		writeImage(out, material.getSelfIlluminationMap());
+	}
+
+	private static void writeColor(Output out, Color color) throws IOException {
+		out.putInt(color == null ? 0 : 1);
+		if (color != null) {
+			out.putDouble(color.getRed());
+			out.putDouble(color.getGreen());
+			out.putDouble(color.getBlue());
+			out.putDouble(color.getOpacity());
+		}
+	}
+
+	private static void writeImage(Output out, Image image) throws IOException {
+		if (image != null && image.getUrl() == null)
+			throw new IllegalArgumentException("Unsupported texture without url");
+		out.putString(image == null ? null : image.getUrl());
+	}
+
+	private static void writeMesh(Output out, TriangleMesh mesh) throws IOException {
+		out.putInt(mesh.getVertexFormat() == VertexFormat.POINT_NORMAL_TEXCOORD ? 1 : 0);
+		out.putFloats(mesh.getPoints().toArray(null));
+		out.putFloats(mesh.getNormals().toArray(null));
+		out.putFloats(mesh.getTexCoords().toArray(null));
+		out.putInts(mesh.getFaces().toArray(null));
+		out.putInts(mesh.getFaceSmoothingGroups().toArray(null));
+	}
+
+	private static void writeNode(Output out, Node node, Map<Material, Integer> materials,
+			Map<TriangleMesh, Integer> meshes) throws IOException {
+		out.putInt(node instanceof MeshView ? MESH_VIEW : GROUP);
+		out.putString(node.getId());
+		out.putInt(node.isVisible() ? 1 : 0);
+		out.putDouble(node.getTranslateX());
+		out.putDouble(node.getTranslateY());
+		out.putDouble(node.getTranslateZ());
+		out.putDouble(node.getRotate());
+		out.putDouble(node.getRotationAxis().getX());
+		out.putDouble(node.getRotationAxis().getY());
+		out.putDouble(node.getRotationAxis().getZ());
+		out.putDouble(node.getScaleX());
+		out.putDouble(node.getScaleY());
+		out.putDouble(node.getScaleZ());
+		out.putInt(node.getTransforms().size());
+		for (Transform t : node.getTransforms()) {
+			for (double value : new double[] { t.getMxx(), t.getMxy(), t.getMxz(), t.getTx(), t.getMyx(), t.getMyy(),
+					t.getMyz(), t.getTy(), t.getMzx(), t.getMzy(), t.getMzz(), t.getTz() })
+				out.putDouble(value);
+		}
+
+		if (node instanceof MeshView) {
+			MeshView meshView = (MeshView) node;
+			out.putInt(meshes.get(meshView.getMesh()));
+			out.putInt(meshView.getMaterial() == null ? -1 : materials.get(meshView.getMaterial()));
+			out.putInt(meshView.getDrawMode().ordinal());
+			out.putInt(meshView.getCullFace().ordinal());
+			LodMesh lod = LodMesh.get(meshView);
+			out.putInt(lod == null ? 0 : lod.getLevels().length);
+			if (lod != null) {
+				for (TriangleMesh level : lod.getLevels())
+					out.putInt(meshes.get(level));
+				out.putDouble(lod.getCenter().getX());
+				out.putDouble(lod.getCenter().getY());
+				out.putDouble(lod.getCenter().getZ());
+				out.putDouble(lod.getRadius());
+			}
+		} else {
+			List<Node> children = ((Group) node).getChildren();
+			out.putInt(children.size());
+			for (Node child : children)
+				writeNode(out, child, materials, meshes);
+		}
+	}
+
+	/**
+	 * Loads nodes written by {@link #write(Node[], Path)}.
+	 * 
+	 * @return the nodes, not attached to any scene
+	 */
+	public static Node[] read(Path file) throws IOException {
+		// read into the heap, since a mapping would keep the file locked on some
+		// platforms until it is garbage collected
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+		try {
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+				throw new IOException("Unsupported mesh file " + file);
+
+			PhongMaterial[] materials = new PhongMaterial[buffer.getInt()];
+			for (int i = 0; i < materials.length; i++)
+				materials[i] = readMaterial(buffer);
+			TriangleMesh[] meshes = new TriangleMesh[buffer.getInt()];
+			for (int i = 0; i < meshes.length; i++)
+				meshes[i] = readMesh(buffer);
+			Node[] nodes = new Node[buffer.getInt()];
+			for (int i = 0; i < nodes.length; i++)
+				nodes[i] = readNode(buffer, materials, meshes);
+			return nodes;
+		} catch (RuntimeException e) {
+			throw new IOException("Corrupted mesh file " + file, e);
+		}
+	}
+
+	private static PhongMaterial readMaterial(ByteBuffer in) {
+		PhongMaterial material = new PhongMaterial();
+		material.setDiffuseColor(readColor(in));
+		material.setSpecularColor(readColor(in));
+		material.setSpecularPower(in.getDouble());
+		material.setDiffuseMap(readImage(in));
+		material.setSpecularMap(readImage(in));
+		material.setBumpMap(readImage(in));
+		material.setSelfIlluminationMap(readImage(in));
+		return material;
+	}
+
+	private static Color readColor(ByteBuffer in) {
+		if (in.getInt() == 0)
+			return null;
+		return new Color(in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble());
+	}
+
+	private static Image readImage(ByteBuffer in) {
+		String url = getString(in);
+		return url == null ? null : new Image(url);
+	}
+
+	private static TriangleMesh readMesh(ByteBuffer in) {
+		TriangleMesh mesh = new TriangleMesh(
+				in.getInt() == 1 ? VertexFormat.POINT_NORMAL_TEXCOORD : VertexFormat.POINT_TEXCOORD);
+		mesh.getPoints().setAll(getFloats(in));
+		mesh.getNormals().setAll(getFloats(in));
+		mesh.getTexCoords().setAll(getFloats(in));
+		mesh.getFaces().setAll(getInts(in));
+		mesh.getFaceSmoothingGroups().setAll(getInts(in));
+		return mesh;
+	}
+
+	private static Node readNode(ByteBuffer in, PhongMaterial[] materials, TriangleMesh[] meshes) {
+		int type = in.getInt();
+		String id = getString(in);
+		boolean visible = in.getInt() != 0;
+		double tx = in.getDouble(), ty = in.getDouble(), tz = in.getDouble();
+		double rotate = in.getDouble();
+		Point3D axis = new Point3D(in.getDouble(), in.getDouble(), in.getDouble());
+		double sx = in.getDouble(), sy = in.getDouble(), sz = in.getDouble();
+		Transform[] transforms = new Transform[in.getInt()];
+		for (int i = 0; i < transforms.length; i++)
+			transforms[i] = new Affine(in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble(),
+					in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble(),
+					in.getDouble());
+
+		Node node;
+		if (type == MESH_VIEW) {
+			MeshView meshView = new MeshView(meshes[in.getInt()]);
+			int material = in.getInt();
+			meshView.setMaterial(material < 0 ? null : materials[material]);
+			meshView.setDrawMode(DrawMode.values()[in.getInt()]);
+			meshView.setCullFace(CullFace.values()[in.getInt()]);
+			TriangleMesh[] levels = new TriangleMesh[in.getInt()];
+			if (levels.length > 0) {
+				for (int i = 0; i < levels.length; i++)
+					levels[i] = meshes[in.getInt()];
+				Point3D center = new Point3D(in.getDouble(), in.getDouble(), in.getDouble());
+				meshView.getProperties().put(LodMesh.PROPERTY, new LodMesh(levels, center, in.getDouble()));
+			}
+			node = meshView;
+		} else {
+			Group group = new Group();
+			for (int i = in.getInt(); i > 0; i--)
+				group.getChildren().add(readNode(in, materials, meshes));
+			node = group;
+		}
+		node.setId(id);
+		node.setVisible(visible);
+		node.setTranslateX(tx);
+		node.setTranslateY(ty);
+		node.setTranslateZ(tz);
+		node.setRotate(rotate);
+		node.setRotationAxis(axis);
+		node.setScaleX(sx);
+		node.setScaleY(sy);
+		node.setScaleZ(sz);
+		node.getTransforms().setAll(transforms);
+		return node;
+	}
+
+	private static float[] getFloats(ByteBuffer in) {
+		float[] values = new float[in.getInt()];
+		in.asFloatBuffer().get(values);
+		in.position(in.position() + 4 * values.length);
+		return values;
+	}
+
+	private static int[] getInts(ByteBuffer in) {
+		int[] values = new int[in.getInt()];
+		in.asIntBuffer().get(values);
+		in.position(in.position() + 4 * values.length);
+		return values;
+	}
+
+	private static String getString(ByteBuffer in) {
+		int length = in.getInt();
+		if (length < 0)
+			return null;
+		byte[] bytes = new byte[length];
+		in.get(bytes);
+		in.position(in.position() + padding(length));
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static int padding(int length) {
+		return (4 - length % 4) % 4;
+	}
+
+	/**
+	 * Buffered little endian output to a file channel
+	 */
+	private static class Output {
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+
+		public Output(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		private void ensure(int bytes) throws IOException {
+			if (buffer.remaining() < bytes)
+				flush();
+		}
+
+		public void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			buffer.clear();
+		}
+
+		public void putInt(int value) throws IOException {
+			ensure(4);
+			buffer.putInt(value);
+		}
+
+		public void putDouble(double value) throws IOException {
+			ensure(8);
+			buffer.putDouble(value);
+		}
+
+		public void putString(String text) throws IOException {
+			if (text == null) {
+				putInt(-1);
+				return;
+			}
+			byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+			putInt(bytes.length);
+			putBytes(ByteBuffer.wrap(bytes));
+			for (int i = padding(bytes.length); i > 0; i--) {
+				ensure(1);
+				buffer.put((byte) 0);
+			}
+		}
+
+		public void putFloats(float[] values) throws IOException {
+			putInt(values.length);
+			ByteBuffer data = ByteBuffer.allocate(4 * values.length).order(ByteOrder.LITTLE_ENDIAN);
+			data.asFloatBuffer().put(values);
+			putBytes(data);
+		}
+
+		public void putInts(int[] values) throws IOException {
+			putInt(values.length);
+			ByteBuffer data = ByteBuffer.allocate(4 * values.length).order(ByteOrder.LITTLE_ENDIAN);
+			data.asIntBuffer().put(values);
+			putBytes(data);
+		}
+
+		private void putBytes(ByteBuffer data) throws IOException {
+			if (data.remaining() <= buffer.remaining()) {
+				buffer.put(data);
+				return;
+			}
+			flush();
+			while (data.hasRemaining())
+				channel.write(data);
+		}
+	}
+
+}
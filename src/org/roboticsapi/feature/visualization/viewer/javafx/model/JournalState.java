@@ -0,0 +1,192 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. 
+ *
+ * Copyright 2010-2017 ISSE, University of Augsburg 
+ */
+
+package org.roboticsapi.feature.visualization.viewer.javafx.model;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.roboticsapi.feature.visualization.tcp.TcpVisualizationProtocol;
+
+/**
+ * Structure and current poses of a journaled scene, written as keyframe into
+ * the {@link SceneJournal} and rebuilt by the {@link SceneJournalPlayer}.
+ * Frame and mesh ids are the ids assigned by the recorded scene.
+ */
+class JournalState {
+
+	/**
+	 * A relation and its current pose
+	 */
+	static class Relation {
+		final int from, to;
+		final double[] pose;
+
+		Relation(int from, int to, double[] pose) {
+			this.from = from;
+			this.to = to;
+			this.pose = pose;
+		}
+	}
+
+	/**
+	 * A model or primitive attached to a frame. The type is the
+	 * {@link TcpVisualizationProtocol} operation which added it.
+	 */
+	static class Mesh {
+		final byte type;
+		final String name;
+		final int frame;
+		final String modelName;
+		final String contentHash;
+		final double[] size;
+		final double[] pose;
+
+		Mesh(byte type, String name, int frame, String modelName, String contentHash, double[] size, double[] pose) {
+			this.type = type;
+			this.name = name;
+			this.frame = frame;
+			this.modelName = modelName;
+			this.contentHash = contentHash;
+			this.size = size;
+			this.pose = pose;
+		}
+	}
+
+	private final Map<Integer, String> frames = new LinkedHashMap<>();
+	private final Map<Long, Relation> relations = new LinkedHashMap<>();
+	private final Map<Integer, Mesh> meshes = new LinkedHashMap<>();
+
+	private static long relationKey(int from, int to) {
+		return ((long) from << 32) | (to & 0xffffffffL);
+	}
+
+	public void addFrame(int id, String name) {
+		frames.put(id, name);
+	}
+
+	/**
+	 * Removes a frame with its meshes and relations.
+	 */
+	public void removeFrame(int id) {
+		frames.remove(id);
+		meshes.values().removeIf(mesh -> mesh.frame == id);
+		relations.values().removeIf(relation -> relation.from == id || relation.to == id);
+	}
+
+	public void addRelation(int from, int to, double[] pose) {
+		relations.put(relationKey(from, to), new Relation(from, to, pose));
+	}
+
+	public void removeRelation(int from, int to) {
+		relations.remove(relationKey(from, to));
+	}
+
+	public void updatePose(int from, int to, double[] pose) {
+		Relation relation = relations.get(relationKey(from, to));
+		if (relation != null)
+			System.arraycopy(pose, 0, relation.pose, 0, 6);
+	}
+
+	public void addMesh(int id, Mesh mesh) {
+		meshes.put(id, mesh);
+	}
+
+	public Map<Integer, String> getFrames() {
+		return frames;
+	}
+
+	public Iterable<Relation> getRelations() {
+		return relations.values();
+	}
+
+	public Map<Integer, Mesh> getMeshes() {
+		return meshes;
+	}
+
+	public void clear() {
+		frames.clear();
+		relations.clear();
+		meshes.clear();
+	}
+
+	/**
+	 * Returns an upper bound for the encoded size.
+	 */
+	public int sizeOf() {
+		int size = 3 * 4 + relations.size() * (2 * 4 + 6 * 8);
+		for (String name : frames.values())
+			size += 4 + TcpVisualizationProtocol.sizeOf(name);
+		for (Mesh mesh : meshes.values())
+			size += 4 + 1 + TcpVisualizationProtocol.sizeOf(mesh.name) + 4
+					+ TcpVisualizationProtocol.sizeOf(mesh.modelName)
+					+ TcpVisualizationProtocol.sizeOf(mesh.contentHash) + 4 + 8 * mesh.size.length + 6 * 8;
+		return size;
+	}
+
+	public void write(ByteBuffer buffer) {
+		buffer.putInt(frames.size());
+		for (Map.Entry<Integer, String> frame : frames.entrySet()) {
+			buffer.putInt(frame.getKey());
+			TcpVisualizationProtocol.putString(buffer, frame.getValue());
+		}
+		buffer.putInt(relations.size());
+		for (Relation relation : relations.values()) {
+			buffer.putInt(relation.from).putInt(relation.to);
+			putDoubles(buffer, relation.pose);
+		}
+		buffer.putInt(meshes.size());
+		for (Map.Entry<Integer, Mesh> entry : meshes.entrySet()) {
+			Mesh mesh = entry.getValue();
+			buffer.putInt(entry.getKey()).put(mesh.type);
+			TcpVisualizationProtocol.putString(buffer, mesh.name);
+			buffer.putInt(mesh.frame);
+			TcpVisualizationProtocol.putString(buffer, mesh.modelName);
+			TcpVisualizationProtocol.putString(buffer, mesh.contentHash);
+			buffer.putInt(mesh.size.length);
+			putDoubles(buffer, mesh.size);
+			putDoubles(buffer, mesh.pose);
+		}
+	}
+
+	/**
+	 * Replaces the content by the state read from the given buffer.
+	 */
+	public void read(ByteBuffer buffer) {
+		clear();
+		for (int i = buffer.getInt(); i > 0; i--)
+			frames.put(buffer.getInt(), TcpVisualizationProtocol.getString(buffer));
+		for (int i = buffer.getInt(); i > 0; i--) {
+			int from = buffer.getInt(), to = buffer.getInt();
+			addRelation(from, to, getDoubles(buffer, 6));
+		}
+		for (int i = buffer.getInt(); i > 0; i--) {
+			int id = buffer.getInt();
+			byte type = buffer.get();
+			String name = TcpVisualizationProtocol.getString(buffer);
+			int frame = buffer.getInt();
+			String modelName = TcpVisualizationProtocol.getString(buffer);
+			String contentHash = TcpVisualizationProtocol.getString(buffer);
+			double[] size = getDoubles(buffer, buffer.getInt());
+			meshes.put(id, new Mesh(type, name, frame, modelName, contentHash, size, getDoubles(buffer, 6)));
+		}
+	}
+
+	static void putDoubles(ByteBuffer buffer, double[] values) {
+		for (double value : values)
+			buffer.putDouble(value);
+	}
+
+	static double[] getDoubles(ByteBuffer buffer, int count) {
+		double[] values = new double[count];
+		for (int i = 0; i < count; i++)
+			values[i] = buffer.getDouble();
+		return values;
+	}
+
+}
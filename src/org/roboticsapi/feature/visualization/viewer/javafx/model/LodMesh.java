@@ -0,0 +1,155 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. 
+ *
+ * Copyright 2010-2017 ISSE, University of Augsburg 
+ */
+
+package org.roboticsapi.feature.visualization.viewer.javafx.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.geometry.Point3D;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+
+/**
+ * Levels of detail of an imported mesh, attached to its {@link MeshView}s as
+ * property {@link #PROPERTY}. Level 0 is the full mesh; every further level has
+ * about a quarter of the triangles of the previous one. Instances are shared by
+ * all copies of a model.
+ */
+public final class LodMesh {
+
+	public static final String PROPERTY = LodMesh.class.getName();
+
+	/**
+	 * meshes with fewer faces are not decimated
+	 */
+	private static final int MIN_FACES = 2000;
+	private static final int MAX_LEVELS = 4;
+
+	/**
+	 * projected diameter in pixels below which the next coarser level is used
+	 */
+	private static final double[] SWITCH_SIZES = { 300, 100, 30 };
+
+	/**
+	 * relative margin around the switch sizes, avoiding flicker at a boundary
+	 */
+	private static final double HYSTERESIS = 0.2;
+
+	private final TriangleMesh[] levels;
+	private final Point3D center;
+	private final double radius;
+
+	public LodMesh(TriangleMesh[] levels, Point3D center, double radius) {
+		this.levels = levels;
+		this.center = center;
+		this.radius = radius;
+	}
+
+	public static LodMesh get(MeshView meshView) {
+		return (LodMesh) meshView.getProperties().get(PROPERTY);
+	}
+
+	/**
+	 * Generates levels of detail for the large meshes of an imported model.
+	 */
+	public static void generate(Node[] nodes) {
+		for (Node node : nodes)
+			generate(node);
+	}
+
+	private static void generate(Node node) {
+		if (node instanceof MeshView) {
+			MeshView meshView = (MeshView) node;
+			if (get(meshView) == null && meshView.getMesh() instanceof TriangleMesh) {
+				LodMesh lod = create((TriangleMesh) meshView.getMesh());
+				if (lod != null)
+					meshView.getProperties().put(PROPERTY, lod);
+			}
+		} else if (node instanceof Group) {
+			for (Node child : ((Group) node).getChildren())
+				generate(child);
+		}
+	}
+
+	private static LodMesh create(TriangleMesh mesh) {
+		int faces = mesh.getFaces().size() / mesh.getFaceElementSize();
+		if (faces < MIN_FACES)
+			return null;
+		List<TriangleMesh> levels = new ArrayList<>();
+		levels.add(mesh);
+		for (int target = faces / 4; target >= MIN_FACES / 16 && levels.size() < MAX_LEVELS; target /= 4) {
+			TriangleMesh level = MeshDecimator.decimate(mesh, target);
+			if (level == null)
+				break;
+			levels.add(level);
+		}
+		if (levels.size() == 1)
+			return null;
+
+		float[] points = mesh.getPoints().toArray(null);
+		double x = 0, y = 0, z = 0;
+		int count = points.length / 3;
+		for (int i = 0; i < points.length; i += 3) {
+			x += points[i];
+			y += points[i + 1];
+			z += points[i + 2];
+		}
+		Point3D center = new Point3D(x / count, y / count, z / count);
+		double radius = 0;
+		for (int i = 0; i < points.length; i += 3)
+			radius = Math.max(radius, center.distance(points[i], points[i + 1], points[i + 2]));
+		return new LodMesh(levels.toArray(new TriangleMesh[levels.size()]), center, radius);
+	}
+
+	public TriangleMesh[] getLevels() {
+		return levels;
+	}
+
+	/**
+	 * Returns the center of the full mesh in local coordinates.
+	 */
+	public Point3D getCenter() {
+		return center;
+	}
+
+	/**
+	 * Returns the radius of the bounding sphere around {@link #getCenter()}.
+	 */
+	public double getRadius() {
+		return radius;
+	}
+
+	public int getLevel(MeshView meshView) {
+		for (int i = 0; i < levels.length; i++) {
+			if (levels[i] == meshView.getMesh())
+				return i;
+		}
+		return 0;
+	}
+
+	/**
+	 * Selects the level for the given projected size, changing the current level
+	 * only once the size is clearly beyond a switch size.
+	 * 
+	 * @param projectedSize projected diameter of the mesh in pixels
+	 * @param current       the current level
+	 * @return the new level
+	 */
+	public int selectLevel(double projectedSize, int current) {
+		int level = Math.min(current, levels.length - 1);
+		while (level < levels.length - 1 && level < SWITCH_SIZES.length
+				&& projectedSize < SWITCH_SIZES[level] * (1 - HYSTERESIS))
+			level++;
+		while (level > 0 && projectedSize > SWITCH_SIZES[level - 1] * (1 + HYSTERESIS))
+			level--;
+		return level;
+	}
+
+}
@@ -0,0 +1,218 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. 
+ *
+ * Copyright 2010-2017 ISSE, University of Augsburg 
+ */
+
+package org.roboticsapi.feature.visualization.viewer.javafx.model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.roboticsapi.feature.visualization.RAPILogger;
+
+import com.interactivemesh.jfx.importer.col.ColModelImporter;
+
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.shape.MeshView;
+
+/**
+ * Viewer-wide cache of imported Collada models, keyed by content hash so that
+ * models uploaded under different names share one import. The imported nodes
+ * are kept as templates which are never attached to a scene; every request
+ * returns a copy of the node tree whose {@link MeshView}s share the mesh and
+ * material of the template.
+ */
+public class MeshCache {
+
+	private static final int MAX_ENTRIES = 64;
+
+	private static final MeshCache instance = new MeshCache();
+
+	public static MeshCache getInstance() {
+		return instance;
+	}
+
+	/**
+	 * imported templates by content hash, least recently used first
+	 */
+	private final Map<String, CompletableFuture<Node[]>> templates =
+			new LinkedHashMap<String, CompletableFuture<Node[]>>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<Node[]>> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong binaryLoads = new AtomicLong();
+
+	private MeshCache() {
+	}
+
+	/**
+	 * Returns a copy of the nodes of the given Collada file with known content
+	 * hash, importing it only if not cached yet.
+	 */
+	public Node[] load(String modelName, String contentHash, Path file) throws IOException {
+		String key = contentHash;
+		CompletableFuture<Node[]> template;
+		boolean owner = false;
+		synchronized (templates) {
+			template = templates.get(key);
+			if (template == null) {
+				template = new CompletableFuture<>();
+				templates.put(key, template);
+				owner = true;
+			}
+		}
+
+		if (owner) {
+			misses.incrementAndGet();
+			try {
+				template.complete(importNodes(contentHash, file));
+			} catch (Throwable e) {
+				// waiting loads of the same model must not block forever
+				synchronized (templates) {
+					templates.remove(key, template);
+				}
+				template.completeExceptionally(e);
+				throw e;
+			}
+		} else {
+			hits.incrementAndGet();
+		}
+
+		try {
+			Node[] nodes = template.get();
+			Node[] result = new Node[nodes.length];
+			for (int i = 0; i < nodes.length; i++)
+				result[i] = copy(nodes[i]);
+			return result;
+		} catch (IllegalArgumentException e) {
+			// node types which cannot be copied are imported again
+			return importNodes(contentHash, file);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			throw new IOException("Import of " + modelName + " failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Loads the binary mesh file of the model if present, otherwise imports the
+	 * Collada file and writes the binary mesh file for the next start.
+	 */
+	private Node[] importNodes(String contentHash, Path file) {
+		ModelStore store = ModelStore.getInstance();
+		Path binary = store.getBinaryMeshFile(contentHash);
+		if (Files.exists(binary)) {
+			try {
+				Node[] nodes = BinaryMesh.read(binary);
+				binaryLoads.incrementAndGet();
+				return nodes;
+			} catch (IOException e) {
+				RAPILogger.logException(this, e);
+			}
+		}
+
+		ColModelImporter colImporter = new ColModelImporter();
+		colImporter.read(file.toFile());
+		Node[] nodes = colImporter.getImport();
+		LodMesh.generate(nodes);
+		try {
+			BinaryMesh.write(nodes, binary);
+		} catch (IOException | IllegalArgumentException e) {
+			RAPILogger.getLogger().fine("No binary mesh file for " + file + ": " + e);
+			return nodes;
+		}
+		try {
+			store.addBinaryMesh(contentHash);
+		} catch (IOException e) {
+			RAPILogger.logException(this, e);
+		}
+		return nodes;
+	}
+
+	/**
+	 * Copies a node tree, sharing meshes, materials and transforms.
+	 */
+	private static Node copy(Node node) {
+		Node copy;
+		if (node instanceof MeshView) {
+			MeshView meshView = (MeshView) node;
+			MeshView copyView = new MeshView(meshView.getMesh());
+			copyView.setMaterial(meshView.getMaterial());
+			copyView.setDrawMode(meshView.getDrawMode());
+			copyView.setCullFace(meshView.getCullFace());
+			LodMesh lod = LodMesh.get(meshView);
+			if (lod != null)
+				copyView.getProperties().put(LodMesh.PROPERTY, lod);
+			copy = copyView;
+		} else if (node instanceof Group) {
+			Group copyGroup = new Group();
+			for (Node child : ((Group) node).getChildrenUnmodifiable())
+				copyGroup.getChildren().add(copy(child));
+			copy = copyGroup;
+		} else {
+			throw new IllegalArgumentException("Cannot copy imported node " + node);
+		}
+		copy.setId(node.getId());
+		copy.setVisible(node.isVisible());
+		copy.setTranslateX(node.getTranslateX());
+		copy.setTranslateY(node.getTranslateY());
+		copy.setTranslateZ(node.getTranslateZ());
+		copy.setRotate(node.getRotate());
+		copy.setRotationAxis(node.getRotationAxis());
+		copy.setScaleX(node.getScaleX());
+		copy.setScaleY(node.getScaleY());
+		copy.setScaleZ(node.getScaleZ());
+		copy.getTransforms().addAll(node.getTransforms());
+		return copy;
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns the number of misses loaded from a binary mesh file instead of the
+	 * Collada file.
+	 */
+	public long getBinaryLoadCount() {
+		return binaryLoads.get();
+	}
+
+	/**
+	 * Removes the imported model with the given content hash, e.g. after it was
+	 * evicted from the model store.
+	 */
+	public void invalidate(String contentHash) {
+		synchronized (templates) {
+			templates.remove(contentHash);
+		}
+	}
+
+	public void clear() {
+		synchronized (templates) {
+			templates.clear();
+		}
+	}
+
+}
@@ -0,0 +1,158 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. 
+ *
+ * Copyright 2010-2017 ISSE, University of Augsburg 
+ */
+
+package org.roboticsapi.feature.visualization.viewer.javafx.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javafx.scene.shape.TriangleMesh;
+import javafx.scene.shape.VertexFormat;
+
+/**
+ * Reduces the number of triangles of a mesh by vertex clustering: points are
+ * merged per cell of a regular grid and triangles collapsing to a line or point
+ * are dropped. Normal and texture coordinate indices of the remaining faces are
+ * kept.
+ */
+public final class MeshDecimator {
+
+	private static final int MIN_GRID = 2;
+	private static final int MAX_GRID = 1024;
+
+	private MeshDecimator() {
+	}
+
+	/**
+	 * Returns a decimated copy of the given mesh with at most about the given
+	 * number of faces.
+	 * 
+	 * @return the decimated mesh, or <code>null</code> if the mesh cannot be
+	 *         reduced to the given number of faces
+	 */
+	public static TriangleMesh decimate(TriangleMesh mesh, int targetFaces) {
+		float[] points = mesh.getPoints().toArray(null);
+		int[] faces = mesh.getFaces().toArray(null);
+		int stride = mesh.getVertexFormat().getVertexIndexSize() * 3;
+		int pointCount = points.length / 3;
+		if (pointCount == 0)
+			return null;
+
+		float[] min = { Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE };
+		float[] max = { -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE };
+		for (int i = 0; i < points.length; i++) {
+			min[i % 3] = Math.min(min[i % 3], points[i]);
+			max[i % 3] = Math.max(max[i % 3], points[i]);
+		}
+		float extent = Math.max(max[0] - min[0], Math.max(max[1] - min[1], max[2] - min[2]));
+		if (extent <= 0)
+			return null;
+
+		// largest grid resolution meeting the target
+		int[] clusters = new int[pointCount];
+		int low = MIN_GRID, high = MAX_GRID, best = -1;
+		while (low <= high) {
+			int grid = (low + high) >>> 1;
+			cluster(points, min, extent / grid, grid, clusters);
+			if (countFaces(faces, stride, mesh.getVertexFormat(), clusters) <= targetFaces) {
+				best = grid;
+				low = grid + 1;
+			} else {
+				high = grid - 1;
+			}
+		}
+		if (best < 0)
+			return null;
+
+		int clusterCount = cluster(points, min, extent / best, best, clusters);
+		float[] newPoints = new float[3 * clusterCount];
+		int[] counts = new int[clusterCount];
+		for (int i = 0; i < pointCount; i++) {
+			int c = clusters[i];
+			newPoints[3 * c] += points[3 * i];
+			newPoints[3 * c + 1] += points[3 * i + 1];
+			newPoints[3 * c + 2] += points[3 * i + 2];
+			counts[c]++;
+		}
+		for (int c = 0; c < clusterCount; c++) {
+			newPoints[3 * c] /= counts[c];
+			newPoints[3 * c + 1] /= counts[c];
+			newPoints[3 * c + 2] /= counts[c];
+		}
+
+		int[] smoothing = mesh.getFaceSmoothingGroups().toArray(null);
+		int[] newFaces = new int[faces.length];
+		int[] newSmoothing = new int[smoothing.length > 0 ? faces.length / stride : 0];
+		int faceCount = 0;
+		int vertexSize = stride / 3;
+		int pointOffset = mesh.getVertexFormat().getPointIndexOffset();
+		for (int f = 0; f < faces.length / stride; f++) {
+			int base = f * stride;
+			int a = clusters[faces[base + pointOffset]];
+			int b = clusters[faces[base + vertexSize + pointOffset]];
+			int c = clusters[faces[base + 2 * vertexSize + pointOffset]];
+			if (a == b || b == c || a == c)
+				continue;
+			int target = faceCount * stride;
+			System.arraycopy(faces, base, newFaces, target, stride);
+			newFaces[target + pointOffset] = a;
+			newFaces[target + vertexSize + pointOffset] = b;
+			newFaces[target + 2 * vertexSize + pointOffset] = c;
+			if (newSmoothing.length > 0)
+				newSmoothing[faceCount] = smoothing[f];
+			faceCount++;
+		}
+
+		TriangleMesh result = new TriangleMesh(mesh.getVertexFormat());
+		result.getPoints().setAll(newPoints);
+		result.getNormals().setAll(mesh.getNormals());
+		result.getTexCoords().setAll(mesh.getTexCoords());
+		result.getFaces().setAll(Arrays.copyOf(newFaces, faceCount * stride));
+		if (newSmoothing.length > 0)
+			result.getFaceSmoothingGroups().setAll(Arrays.copyOf(newSmoothing, faceCount));
+		return result;
+	}
+
+	/**
+	 * Assigns each point to a grid cell.
+	 * 
+	 * @return the number of non-empty cells
+	 */
+	private static int cluster(float[] points, float[] min, float cellSize, int grid, int[] clusters) {
+		Map<Long, Integer> cells = new HashMap<>();
+		long size = grid + 1;
+		for (int i = 0; i < clusters.length; i++) {
+			long x = Math.min(grid, (long) ((points[3 * i] - min[0]) / cellSize));
+			long y = Math.min(grid, (long) ((points[3 * i + 1] - min[1]) / cellSize));
+			long z = Math.min(grid, (long) ((points[3 * i + 2] - min[2]) / cellSize));
+			Long key = (x * size + y) * size + z;
+			Integer cell = cells.get(key);
+			if (cell == null) {
+				cell = cells.size();
+				cells.put(key, cell);
+			}
+			clusters[i] = cell;
+		}
+		return cells.size();
+	}
+
+	private static int countFaces(int[] faces, int stride, VertexFormat format, int[] clusters) {
+		int vertexSize = stride / 3;
+		int pointOffset = format.getPointIndexOffset();
+		int count = 0;
+		for (int base = 0; base < faces.length; base += stride) {
+			int a = clusters[faces[base + pointOffset]];
+			int b = clusters[faces[base + vertexSize + pointOffset]];
+			int c = clusters[faces[base + 2 * vertexSize + pointOffset]];
+			if (a != b && b != c && a != c)
+				count++;
+		}
+		return count;
+	}
+
+}
@@ -0,0 +1,133 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. 
+ *
+ * Copyright 2010-2017 ISSE, University of Augsburg 
+ */
+
+package org.roboticsapi.feature.visualization.viewer.javafx.model;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javafx.scene.Node;
+
+/**
+ * Viewer-wide pool of worker threads importing models through the
+ * {@link MeshCache}, so that several models are parsed in parallel and remote
+ * calls never wait for an import.
+ */
+public class ModelImportPool {
+
+	private static final ModelImportPool instance = new ModelImportPool(
+			Math.max(1, Runtime.getRuntime().availableProcessors()));
+
+	public static ModelImportPool getInstance() {
+		return instance;
+	}
+
+	private final ExecutorService executor;
+
+	/**
+	 * number of submitted but unfinished imports by content hash
+	 */
+	private final Map<String, Integer> pending = new ConcurrentHashMap<>();
+
+	private final AtomicInteger queued = new AtomicInteger();
+	private final AtomicLong completed = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong totalImportNanos = new AtomicLong();
+	private final AtomicLong maxImportNanos = new AtomicLong();
+	private volatile long lastImportNanos = 0;
+
+	private ModelImportPool(int threads) {
+		AtomicInteger count = new AtomicInteger();
+		executor = Executors.newFixedThreadPool(threads, r -> {
+			Thread thread = new Thread(r);
+			thread.setDaemon(true);
+			thread.setName("Robotics API model import " + count.incrementAndGet());
+			return thread;
+		});
+	}
+
+	/**
+	 * Imports the given model on a worker thread.
+	 * 
+	 * @param contentHash the content hash of the model, as reported by
+	 *                    {@link ModelStore}
+	 * @return the imported nodes, not attached to any scene
+	 */
+	public CompletableFuture<Node[]> submit(String modelName, String contentHash, Path file) {
+		queued.incrementAndGet();
+		pending.merge(contentHash, 1, Integer::sum);
+		CompletableFuture<Node[]> result = new CompletableFuture<>();
+		executor.execute(() -> {
+			long start = System.nanoTime();
+			try {
+				Node[] nodes = MeshCache.getInstance().load(modelName, contentHash, file);
+				recordImport(System.nanoTime() - start);
+				result.complete(nodes);
+			} catch (IOException | RuntimeException e) {
+				failed.incrementAndGet();
+				result.completeExceptionally(e);
+			} finally {
+				pending.computeIfPresent(contentHash, (hash, count) -> count == 1 ? null : count - 1);
+				queued.decrementAndGet();
+			}
+		});
+		return result;
+	}
+
+	private void recordImport(long nanos) {
+		completed.incrementAndGet();
+		totalImportNanos.addAndGet(nanos);
+		lastImportNanos = nanos;
+		long max;
+		while (nanos > (max = maxImportNanos.get()) && !maxImportNanos.compareAndSet(max, nanos))
+			;
+	}
+
+	/**
+	 * Checks whether an import of the model with the given content hash was
+	 * submitted but is not finished yet.
+	 */
+	public boolean isPending(String contentHash) {
+		return pending.containsKey(contentHash);
+	}
+
+	/**
+	 * Returns the number of imports submitted but not yet finished.
+	 */
+	public int getQueueDepth() {
+		return queued.get();
+	}
+
+	public long getCompletedCount() {
+		return completed.get();
+	}
+
+	public long getFailedCount() {
+		return failed.get();
+	}
+
+	public double getAverageImportMillis() {
+		long count = completed.get();
+		return count == 0 ? 0 : totalImportNanos.get() / 1e6 / count;
+	}
+
+	public double getMaxImportMillis() {
+		return maxImportNanos.get() / 1e6;
+	}
+
+	public double getLastImportMillis() {
+		return lastImportNanos / 1e6;
+	}
+
+}
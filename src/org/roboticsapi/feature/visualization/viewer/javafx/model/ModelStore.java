@@ -0,0 +1,656 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. 
+ *
+ * Copyright 2010-2017 ISSE, University of Augsburg 
+ */
+
+package org.roboticsapi.feature.visualization.viewer.javafx.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.roboticsapi.feature.visualization.ModelHash;
+import org.roboticsapi.feature.visualization.RAPILogger;
+
+/**
+ * Content-addressed store of uploaded models. Each model is stored once per
+ * content hash together with its aux files (e.g. textures), and model names
+ * map to content hashes. Uploads are written to a temporary directory and moved
+ * into place atomically, so a partially written model is never read. When the
+ * store exceeds its disk budget, the least recently used models are evicted.
+ * Viewers sharing the store synchronize changes through a lock file and use
+ * temporary directories of their own.
+ * 
+ * Layout: <code>objects/&lt;hash&gt;/model.dae</code> plus aux files,
+ * <code>meshes/&lt;hash&gt;.rmesh</code> for the {@link BinaryMesh} of a model,
+ * <code>index.properties</code> mapping names to hashes, <code>store.lock</code>
+ * and <code>tmp/&lt;process&gt;</code>.
+ */
+public class ModelStore {
+
+	public static final String MODEL_FILE = "model.dae";
+	public static final long DEFAULT_BUDGET = 1024L * 1024 * 1024;
+
+	private static final String INDEX_FILE = "index.properties";
+	private static final String LOCK_FILE = "store.lock";
+	private static final long UPLOAD_EXPIRY = 24L * 60 * 60 * 1000;
+
+	private static ModelStore instance = null;
+
+	/**
+	 * Returns the store used by the viewer, by default located in
+	 * <code>java.io.tmpdir</code> with {@link #DEFAULT_BUDGET}.
+	 */
+	public static synchronized ModelStore getInstance() {
+		if (instance == null) {
+			try {
+				instance = new ModelStore(getDefaultRoot(), DEFAULT_BUDGET);
+			} catch (IOException e) {
+				throw new IllegalStateException("Cannot open model store", e);
+			}
+		}
+		return instance;
+	}
+
+	public static Path getDefaultRoot() {
+		return Paths.get(System.getProperty("java.io.tmpdir"), "rapivis-models");
+	}
+
+	public static synchronized void setInstance(ModelStore store) {
+		instance = store;
+	}
+
+	/**
+	 * A stored model
+	 */
+	public static class Model {
+		private final String hash;
+		private final Path file;
+
+		private Model(String hash, Path file) {
+			this.hash = hash;
+			this.file = file;
+		}
+
+		public String getHash() {
+			return hash;
+		}
+
+		/**
+		 * Returns the Collada file; aux files are located next to it.
+		 */
+		public Path getFile() {
+			return file;
+		}
+	}
+
+	private final Path root;
+	private final Path objects;
+	private final Path meshes;
+	private final Path temp;
+	private final Path uploadsDir;
+	private final long budget;
+
+	/**
+	 * locked while the index or the stored models are changed
+	 */
+	private final FileChannel lockChannel;
+
+	/**
+	 * A chunked upload in progress
+	 */
+	private static class Upload {
+		private String modelName;
+		private final Path dir;
+
+		private Upload(String modelName, Path dir) {
+			this.modelName = modelName;
+			this.dir = dir;
+		}
+	}
+
+	private final Map<String, Upload> uploads = new HashMap<>();
+
+	/**
+	 * content hash by model name
+	 */
+	private final Properties index = new Properties();
+
+	/**
+	 * size of the stored models including their binary mesh files by content
+	 * hash, least recently used first
+	 */
+	private final LinkedHashMap<String, Long> sizes = new LinkedHashMap<>(16, 0.75f, true);
+	private long usedBytes = 0;
+
+	/**
+	 * number of resolved but not yet released models by content hash
+	 */
+	private final Map<String, Integer> pinned = new HashMap<>();
+
+	/**
+	 * Opens or creates a model store.
+	 * 
+	 * @param root   the directory of the store
+	 * @param budget the maximum number of bytes used by stored models
+	 */
+	public ModelStore(Path root, long budget) throws IOException {
+		this.root = root;
+		this.objects = root.resolve("objects");
+		this.meshes = root.resolve("meshes");
+		this.temp = root.resolve("tmp").resolve(UUID.randomUUID().toString());
+		this.uploadsDir = root.resolve("uploads");
+		this.budget = budget;
+		Files.createDirectories(objects);
+		Files.createDirectories(meshes);
+		Files.createDirectories(temp);
+		Files.createDirectories(uploadsDir);
+		lockChannel = FileChannel.open(root.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		try (FileLock lock = lockChannel.lock()) {
+			deleteExpired(temp.getParent());
+			deleteExpired(uploadsDir);
+			load();
+		}
+	}
+
+	private void load() throws IOException {
+		// restore the usage order from the access times
+		List<Path> stored = new ArrayList<>();
+		try (DirectoryStream<Path> dirs = Files.newDirectoryStream(objects)) {
+			for (Path dir : dirs)
+				stored.add(dir);
+		}
+		Map<Path, FileTime> accessed = new HashMap<>();
+		for (Path dir : stored)
+			accessed.put(dir, Files.getLastModifiedTime(dir));
+		stored.sort(Comparator.comparing(accessed::get));
+		for (Path dir : stored) {
+			String hash = dir.getFileName().toString();
+			long size = storedSize(hash);
+			sizes.put(hash, size);
+			usedBytes += size;
+		}
+		loadIndex();
+
+		// remove binary mesh files of evicted models
+		long limit = System.currentTimeMillis() - UPLOAD_EXPIRY;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(meshes)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				boolean orphaned = name.endsWith(".rmesh")
+						? !sizes.containsKey(name.substring(0, name.length() - ".rmesh".length()))
+						: Files.getLastModifiedTime(file).toMillis() < limit;
+				if (orphaned)
+					Files.deleteIfExists(file);
+			}
+		}
+	}
+
+	/**
+	 * Reads the names of the stored models, dropping names of missing models.
+	 */
+	private void loadIndex() throws IOException {
+		index.clear();
+		Path indexFile = root.resolve(INDEX_FILE);
+		if (Files.exists(indexFile)) {
+			try (InputStream in = Files.newInputStream(indexFile)) {
+				index.load(in);
+			}
+		}
+		index.values().removeIf(hash -> !sizes.containsKey(hash));
+	}
+
+	/**
+	 * Locks the store against other processes and takes over the models stored
+	 * or evicted by them since the last lock.
+	 */
+	private FileLock lock() throws IOException {
+		FileLock lock = lockChannel.lock();
+		try {
+			Set<String> stored = new HashSet<>();
+			try (DirectoryStream<Path> dirs = Files.newDirectoryStream(objects)) {
+				for (Path dir : dirs)
+					stored.add(dir.getFileName().toString());
+			}
+			Iterator<Map.Entry<String, Long>> it = sizes.entrySet().iterator();
+			while (it.hasNext()) {
+				Map.Entry<String, Long> entry = it.next();
+				if (!stored.contains(entry.getKey())) {
+					usedBytes -= entry.getValue();
+					it.remove();
+					MeshCache.getInstance().invalidate(entry.getKey());
+				}
+			}
+			for (String hash : stored) {
+				if (!sizes.containsKey(hash)) {
+					long size = storedSize(hash);
+					sizes.put(hash, size);
+					usedBytes += size;
+				}
+			}
+			loadIndex();
+			return lock;
+		} catch (IOException | RuntimeException e) {
+			lock.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Removes entries which were not modified for a day, i.e. interrupted
+	 * uploads which were not resumed and temporary directories of ended
+	 * processes.
+	 */
+	private static void deleteExpired(Path parent) throws IOException {
+		long limit = System.currentTimeMillis() - UPLOAD_EXPIRY;
+		try (DirectoryStream<Path> dirs = Files.newDirectoryStream(parent)) {
+			for (Path dir : dirs) {
+				if (Files.getLastModifiedTime(dir).toMillis() < limit)
+					deleteRecursively(dir);
+			}
+		}
+	}
+
+	public synchronized boolean contains(String name) {
+		return index.getProperty(name) != null;
+	}
+
+	/**
+	 * Registers models whose content is already stored under the given names.
+	 * 
+	 * @param models content hash by model name
+	 * @return names of the models whose content is not stored
+	 */
+	public synchronized List<String> link(Map<String, String> models) throws IOException {
+		try (FileLock lock = lock()) {
+			List<String> missing = new ArrayList<>();
+			boolean changed = false;
+			for (Map.Entry<String, String> model : models.entrySet()) {
+				String name = model.getKey(), hash = model.getValue();
+				if (hash == null || sizes.get(hash) == null) {
+					missing.add(name);
+				} else if (!hash.equals(index.getProperty(name))) {
+					index.setProperty(name, hash);
+					changed = true;
+				}
+			}
+			if (changed)
+				saveIndex();
+			return missing;
+		}
+	}
+
+	/**
+	 * Returns the model stored under the given name and marks it as recently
+	 * used. The model is pinned, i.e. not evicted, until it is
+	 * {@link #release(Model) released}, which has to happen once its import is
+	 * submitted to the {@link ModelImportPool}.
+	 * 
+	 * @return the model, or <code>null</code> if unknown
+	 */
+	public synchronized Model resolve(String name) {
+		String hash = index.getProperty(name);
+		return hash == null ? null : resolveHash(hash);
+	}
+
+	/**
+	 * Returns the model with the given content hash and marks it as recently
+	 * used. The model is pinned like by {@link #resolve(String)}.
+	 * 
+	 * @return the model, or <code>null</code> if not stored
+	 */
+	public synchronized Model resolveHash(String hash) {
+		Path dir = objects.resolve(hash);
+		// the model may have been evicted by another process
+		if (sizes.get(hash) == null || !Files.isDirectory(dir))
+			return null;
+		try {
+			Files.setLastModifiedTime(dir, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e) {
+			RAPILogger.logException(this, e);
+		}
+		pinned.merge(hash, 1, Integer::sum);
+		return new Model(hash, dir.resolve(MODEL_FILE));
+	}
+
+	/**
+	 * Releases a model returned by {@link #resolve(String)} or
+	 * {@link #resolveHash(String)}, allowing it to be evicted again.
+	 */
+	public synchronized void release(Model model) {
+		pinned.computeIfPresent(model.getHash(), (hash, count) -> count == 1 ? null : count - 1);
+	}
+
+	/**
+	 * Stores a model under the given name. Uploading content which is already
+	 * stored only adds the name.
+	 * 
+	 * @param name     the model name
+	 * @param data     the Collada file
+	 * @param auxFiles further files referenced by the model by relative path, may
+	 *                 be <code>null</code>
+	 * @return the content hash
+	 */
+	public String store(String name, byte[] data, Map<String, byte[]> auxFiles) throws IOException {
+		String hash = ModelHash.of(data, auxFiles);
+
+		synchronized (this) {
+			try (FileLock lock = lock()) {
+				if (sizes.get(hash) != null) {
+					index.setProperty(name, hash);
+					saveIndex();
+					return hash;
+				}
+			}
+		}
+
+		// write outside the lock, then move into place atomically
+		Path staging = temp.resolve(UUID.randomUUID().toString());
+		Files.createDirectories(staging);
+		try {
+			Files.write(staging.resolve(MODEL_FILE), data);
+			if (auxFiles != null) {
+				for (Map.Entry<String, byte[]> file : auxFiles.entrySet()) {
+					Path target = resolveAuxFile(staging, file.getKey());
+					Files.createDirectories(target.getParent());
+					Files.write(target, file.getValue());
+				}
+			}
+			install(name, hash, staging);
+			return hash;
+		} finally {
+			deleteRecursively(staging);
+		}
+	}
+
+	/**
+	 * Returns the location of an aux file in a model directory.
+	 * 
+	 * @throws IOException if the name leaves the model directory
+	 */
+	static Path resolveAuxFile(Path dir, String fileName) throws IOException {
+		Path target = dir.resolve(fileName).normalize();
+		if (!target.startsWith(dir) || target.equals(dir) || target.equals(dir.resolve(MODEL_FILE)))
+			throw new IOException("Invalid aux file name " + fileName);
+		return target;
+	}
+
+	/**
+	 * Moves a completely written model directory into the store.
+	 */
+	private synchronized void install(String name, String hash, Path staging) throws IOException {
+		try (FileLock lock = lock()) {
+			Path dir = objects.resolve(hash);
+			// another upload of the same content may have finished meanwhile
+			if (!Files.exists(dir)) {
+				Files.move(staging, dir, StandardCopyOption.ATOMIC_MOVE);
+				long size = storedSize(hash);
+				sizes.put(hash, size);
+				usedBytes += size;
+			}
+			index.setProperty(name, hash);
+			evict(hash);
+			saveIndex();
+		}
+	}
+
+	/**
+	 * Starts or resumes a chunked upload. Received data is kept across
+	 * connections until the upload is finished, so an interrupted upload
+	 * continues with the same id.
+	 * 
+	 * @param uploadId  id chosen by the uploader, e.g. the content hash
+	 * @param modelName the model name
+	 */
+	public void beginUpload(String uploadId, String modelName) throws IOException {
+		if (uploadId == null || !uploadId.matches("[A-Za-z0-9_-]{1,128}"))
+			throw new IOException("Invalid upload id " + uploadId);
+		Path dir = uploadsDir.resolve(uploadId);
+		Files.createDirectories(dir);
+		Files.setLastModifiedTime(dir, FileTime.fromMillis(System.currentTimeMillis()));
+		synchronized (uploads) {
+			Upload upload = uploads.get(uploadId);
+			if (upload == null)
+				uploads.put(uploadId, new Upload(modelName, dir));
+			else
+				upload.modelName = modelName;
+		}
+	}
+
+	private Upload getUpload(String uploadId) throws IOException {
+		synchronized (uploads) {
+			Upload upload = uploads.get(uploadId);
+			if (upload == null)
+				throw new IOException("Unknown upload " + uploadId);
+			return upload;
+		}
+	}
+
+	/**
+	 * Appends a deflated chunk to a file of an upload. The chunk is inflated
+	 * straight into the file, and is only written if it continues the file at
+	 * the given offset.
+	 * 
+	 * @param fileName the aux file name, or <code>null</code> for the DAE file
+	 * @param offset   the uncompressed position of the chunk in the file
+	 * @param chunk    the deflated chunk, or <code>null</code> to query the
+	 *                 number of bytes received
+	 * @return the number of bytes of the file received so far
+	 */
+	public long appendUpload(String uploadId, String fileName, long offset, byte[] chunk) throws IOException {
+		Upload upload = getUpload(uploadId);
+		Path file = fileName == null ? upload.dir.resolve(MODEL_FILE) : resolveAuxFile(upload.dir, fileName);
+
+		synchronized (upload) {
+			Files.createDirectories(file.getParent());
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+				long size = channel.size();
+				if (chunk == null || offset != size)
+					return size;
+				channel.position(size);
+				Inflater inflater = new Inflater();
+				try {
+					inflater.setInput(chunk);
+					byte[] buffer = new byte[64 * 1024];
+					while (!inflater.finished()) {
+						int count = inflater.inflate(buffer);
+						if (count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+							throw new DataFormatException("Truncated chunk");
+						ByteBuffer data = ByteBuffer.wrap(buffer, 0, count);
+						while (data.hasRemaining())
+							channel.write(data);
+					}
+				} catch (IOException | DataFormatException e) {
+					// keep the file consistent for a retry of the chunk
+					channel.truncate(size);
+					throw new IOException("Could not append to " + file.getFileName() + " of upload " + uploadId, e);
+				} finally {
+					inflater.end();
+				}
+				return channel.size();
+			}
+		}
+	}
+
+	/**
+	 * Completes an upload and stores the model.
+	 * 
+	 * @param contentHash the {@link ModelHash} of the model, verified against
+	 *                    the received files
+	 */
+	public void finishUpload(String uploadId, String contentHash) throws IOException {
+		Upload upload = getUpload(uploadId);
+		synchronized (upload) {
+			Path modelFile = upload.dir.resolve(MODEL_FILE);
+			if (!Files.exists(modelFile))
+				throw new IOException("Upload " + uploadId + " has no model file");
+			Map<String, Path> auxFiles = new HashMap<>();
+			for (Path file : listFiles(upload.dir)) {
+				if (Files.isRegularFile(file) && !file.equals(modelFile))
+					auxFiles.put(upload.dir.relativize(file).toString().replace('\\', '/'), file);
+			}
+
+			String hash = ModelHash.of(modelFile, auxFiles);
+			synchronized (uploads) {
+				uploads.remove(uploadId);
+			}
+			try {
+				// a corrupted upload is discarded and has to be sent again
+				if (!hash.equals(contentHash))
+					throw new IOException("Checksum mismatch in upload " + uploadId + " of " + upload.modelName);
+				install(upload.modelName, hash, upload.dir);
+			} finally {
+				deleteRecursively(upload.dir);
+			}
+		}
+	}
+
+	/**
+	 * Removes the least recently used models until the budget is met. Pinned
+	 * models and models still being imported are kept, since the import reads
+	 * their files. The binary mesh file is deleted first, and the model
+	 * directory is moved out of the store atomically before deleting it, so a
+	 * failed deletion never leaves a partial model behind.
+	 * 
+	 * @return whether any model was removed
+	 */
+	private boolean evict(String keep) {
+		boolean evicted = false;
+		Iterator<Map.Entry<String, Long>> it = sizes.entrySet().iterator();
+		while (usedBytes > budget && it.hasNext()) {
+			Map.Entry<String, Long> entry = it.next();
+			String hash = entry.getKey();
+			if (hash.equals(keep) || pinned.containsKey(hash) || ModelImportPool.getInstance().isPending(hash))
+				continue;
+			Path trash = temp.resolve(hash + "." + UUID.randomUUID());
+			try {
+				Files.deleteIfExists(getBinaryMeshFile(hash));
+				Files.createDirectories(temp);
+				Files.move(objects.resolve(hash), trash, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				RAPILogger.logException(this, e);
+				continue;
+			}
+			usedBytes -= entry.getValue();
+			it.remove();
+			while (index.values().remove(hash))
+				;
+			MeshCache.getInstance().invalidate(hash);
+			evicted = true;
+			try {
+				deleteRecursively(trash);
+			} catch (IOException e) {
+				RAPILogger.logException(this, e);
+			}
+		}
+		return evicted;
+	}
+
+	private void saveIndex() throws IOException {
+		Files.createDirectories(temp);
+		Path file = temp.resolve(INDEX_FILE + "." + UUID.randomUUID());
+		try (OutputStream out = Files.newOutputStream(file)) {
+			index.store(out, "model name to content hash");
+		}
+		Files.move(file, root.resolve(INDEX_FILE), StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Returns the location of the {@link BinaryMesh} file of a model, which is
+	 * removed together with the model.
+	 */
+	public Path getBinaryMeshFile(String hash) {
+		return meshes.resolve(hash + ".rmesh");
+	}
+
+	/**
+	 * Counts a written binary mesh file against the budget. The file is deleted
+	 * if its model was evicted meanwhile.
+	 */
+	public synchronized void addBinaryMesh(String hash) throws IOException {
+		try (FileLock lock = lock()) {
+			Long size = sizes.get(hash);
+			if (size == null) {
+				Files.deleteIfExists(getBinaryMeshFile(hash));
+				return;
+			}
+			long updated = storedSize(hash);
+			sizes.put(hash, updated);
+			usedBytes += updated - size;
+			if (evict(hash))
+				saveIndex();
+		}
+	}
+
+	/**
+	 * Returns the size of a stored model and its binary mesh file.
+	 */
+	private long storedSize(String hash) throws IOException {
+		Path binary = getBinaryMeshFile(hash);
+		return sizeOf(objects.resolve(hash)) + (Files.exists(binary) ? Files.size(binary) : 0);
+	}
+
+	public synchronized long getUsedBytes() {
+		return usedBytes;
+	}
+
+	public long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Returns a directory and all files below, parents first.
+	 */
+	private static List<Path> listFiles(Path dir) throws IOException {
+		List<Path> paths = new ArrayList<>();
+		try (Stream<Path> files = Files.walk(dir)) {
+			files.forEach(paths::add);
+		}
+		return paths;
+	}
+
+	private static long sizeOf(Path dir) throws IOException {
+		long size = 0;
+		for (Path file : listFiles(dir)) {
+			if (Files.isRegularFile(file))
+				size += Files.size(file);
+		}
+		return size;
+	}
+
+	private static void deleteRecursively(Path dir) throws IOException {
+		if (!Files.exists(dir))
+			return;
+		List<Path> paths = listFiles(dir);
+		for (int i = paths.size() - 1; i >= 0; i--)
+			Files.deleteIfExists(paths.get(i));
+	}
+
+}
@@ -0,0 +1,163 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. 
+ *
+ * Copyright 2010-2017 ISSE, University of Augsburg 
+ */
+
+package org.roboticsapi.feature.visualization.viewer.javafx.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Double-buffered ingest of relation poses, indexed by relation slot.
+ * 
+ * Writers (e.g. RMI threads) store poses into the back buffer without taking a
+ * lock. Once per pulse the JavaFX thread swaps the buffers and applies the poses
+ * of the former back buffer. Only the latest pose per slot is applied; poses
+ * replaced before being applied are counted as overwritten.
+ */
+class PoseBuffer {
+
+	private static final int CLEAN = 0;
+	private static final int WRITING = 1;
+	private static final int DIRTY = 2;
+
+	public interface PoseConsumer {
+		void accept(int slot, double x, double y, double z, double a, double b, double c);
+	}
+
+	private static class Bank {
+		private final int capacity;
+		private final double[] poses;
+		private final AtomicIntegerArray state;
+		private final int[] dirty;
+		private final AtomicInteger dirtyCount = new AtomicInteger();
+		private final AtomicInteger writers = new AtomicInteger();
+
+		public Bank(int capacity) {
+			this.capacity = capacity;
+			poses = new double[6 * capacity];
+			state = new AtomicIntegerArray(capacity);
+			dirty = new int[capacity];
+		}
+	}
+
+	private volatile Bank back;
+	private Bank spare = null;
+
+	/**
+	 * back buffers replaced by larger ones, still to be applied
+	 */
+	private final List<Bank> retired = new ArrayList<>();
+	private final Object swapLock = new Object();
+	private final AtomicLong overwritten = new AtomicLong();
+
+	public PoseBuffer(int initialCapacity) {
+		back = new Bank(Math.max(1, initialCapacity));
+	}
+
+	/**
+	 * Stores the pose for the given slot. Never blocks the caller on the JavaFX
+	 * thread.
+	 */
+	public void write(int slot, double x, double y, double z, double a, double b, double c) {
+		Bank bank = acquire();
+		while (slot >= bank.capacity) {
+			bank.writers.decrementAndGet();
+			grow(slot + 1);
+			bank = acquire();
+		}
+
+		int previous;
+		do {
+			previous = bank.state.get(slot);
+		} while (previous == WRITING || !bank.state.compareAndSet(slot, previous, WRITING));
+
+		int p = 6 * slot;
+		bank.poses[p] = x;
+		bank.poses[p + 1] = y;
+		bank.poses[p + 2] = z;
+		bank.poses[p + 3] = a;
+		bank.poses[p + 4] = b;
+		bank.poses[p + 5] = c;
+
+		if (previous == DIRTY)
+			overwritten.incrementAndGet();
+		else
+			bank.dirty[bank.dirtyCount.getAndIncrement()] = slot;
+		bank.state.set(slot, DIRTY);
+		bank.writers.decrementAndGet();
+	}
+
+	/**
+	 * Registers the calling writer with the current back buffer. A buffer swapped
+	 * out meanwhile is not used, so the reader only has to wait for writers which
+	 * registered before the swap.
+	 */
+	private Bank acquire() {
+		while (true) {
+			Bank bank = back;
+			bank.writers.incrementAndGet();
+			if (bank == back)
+				return bank;
+			bank.writers.decrementAndGet();
+		}
+	}
+
+	private void grow(int minCapacity) {
+		synchronized (swapLock) {
+			if (back.capacity >= minCapacity)
+				return;
+			retired.add(back);
+			back = new Bank(Math.max(minCapacity, 2 * back.capacity));
+		}
+	}
+
+	/**
+	 * Swaps the buffers and passes all poses written since the last call to the
+	 * given consumer. Must only be called by a single thread.
+	 */
+	public void apply(PoseConsumer consumer) {
+		Bank front;
+		List<Bank> older;
+		synchronized (swapLock) {
+			front = back;
+			Bank next = spare != null && spare.capacity == front.capacity ? spare : new Bank(front.capacity);
+			back = next;
+			spare = null;
+			older = new ArrayList<>(retired);
+			retired.clear();
+		}
+		for (Bank bank : older)
+			apply(bank, consumer);
+		apply(front, consumer);
+		spare = front;
+	}
+
+	private static void apply(Bank bank, PoseConsumer consumer) {
+		while (bank.writers.get() != 0)
+			Thread.yield();
+		int count = bank.dirtyCount.get();
+		double[] poses = bank.poses;
+		for (int i = 0; i < count; i++) {
+			int slot = bank.dirty[i];
+			int p = 6 * slot;
+			bank.state.set(slot, CLEAN);
+			consumer.accept(slot, poses[p], poses[p + 1], poses[p + 2], poses[p + 3], poses[p + 4], poses[p + 5]);
+		}
+		bank.dirtyCount.set(0);
+	}
+
+	/**
+	 * Returns the number of poses which were replaced before being applied.
+	 */
+	public long getOverwrittenCount() {
+		return overwritten.get();
+	}
+
+}
@@ -0,0 +1,174 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. 
+ *
+ * Copyright 2010-2017 ISSE, University of Augsburg 
+ */
+
+package org.roboticsapi.feature.visualization.viewer.javafx.model;
+
+import java.util.Arrays;
+import java.util.function.IntSupplier;
+
+/**
+ * Slot-indexed storage of the relation poses of a frame graph in primitive
+ * arrays. Slots are dense ids, e.g. those handed out by
+ * {@link RemoteSceneImpl}, so the arrays are indexed directly.
+ * 
+ * A deferred store only records changed slots; {@link #applyUpdates()} then
+ * updates each changed relation once. Otherwise relations are updated
+ * immediately. Only accessed from the JavaFX thread.
+ */
+public class PoseStore {
+
+	private static final int POSE_SIZE = 6;
+
+	private final boolean deferred;
+	private final IntSupplier slotAllocator;
+
+	private double[] poses;
+	private RapiRelation[] relations;
+	private boolean[] dirtyFlags;
+	private int[] dirty;
+	private int dirtyCount = 0;
+
+	/**
+	 * @param deferred      whether changes are applied by
+	 *                      {@link #applyUpdates()} instead of immediately
+	 * @param slotAllocator supplies slots for relations created without one
+	 */
+	public PoseStore(boolean deferred, IntSupplier slotAllocator) {
+		this.deferred = deferred;
+		this.slotAllocator = slotAllocator;
+		relations = new RapiRelation[16];
+		poses = new double[POSE_SIZE * relations.length];
+		dirtyFlags = new boolean[relations.length];
+		dirty = new int[relations.length];
+	}
+
+	/**
+	 * Creates a store allocating slots from 0 upwards.
+	 */
+	public PoseStore(boolean deferred) {
+		this(deferred, new IntSupplier() {
+			private int next = 0;
+
+			@Override
+			public int getAsInt() {
+				return next++;
+			}
+		});
+	}
+
+	public int allocateSlot() {
+		return slotAllocator.getAsInt();
+	}
+
+	private void ensureCapacity(int slot) {
+		if (slot < relations.length)
+			return;
+		int capacity = Math.max(slot + 1, 2 * relations.length);
+		relations = Arrays.copyOf(relations, capacity);
+		poses = Arrays.copyOf(poses, POSE_SIZE * capacity);
+		dirtyFlags = Arrays.copyOf(dirtyFlags, capacity);
+		dirty = Arrays.copyOf(dirty, capacity);
+	}
+
+	void register(int slot, RapiRelation relation, double x, double y, double z, double a, double b, double c) {
+		ensureCapacity(slot);
+		relations[slot] = relation;
+		write(slot, x, y, z, a, b, c);
+	}
+
+	void release(int slot) {
+		if (slot < relations.length)
+			relations[slot] = null;
+	}
+
+	public RapiRelation getRelation(int slot) {
+		return slot >= 0 && slot < relations.length ? relations[slot] : null;
+	}
+
+	/**
+	 * Sets the pose of the relation in the given slot. Poses for empty slots are
+	 * ignored.
+	 */
+	public void set(int slot, double x, double y, double z, double a, double b, double c) {
+		RapiRelation relation = getRelation(slot);
+		if (relation == null)
+			return;
+		write(slot, x, y, z, a, b, c);
+		if (!deferred) {
+			relation.performUpdate();
+		} else if (!dirtyFlags[slot]) {
+			dirtyFlags[slot] = true;
+			dirty[dirtyCount++] = slot;
+		}
+	}
+
+	private void write(int slot, double x, double y, double z, double a, double b, double c) {
+		int p = POSE_SIZE * slot;
+		poses[p] = x;
+		poses[p + 1] = y;
+		poses[p + 2] = z;
+		poses[p + 3] = a;
+		poses[p + 4] = b;
+		poses[p + 5] = c;
+	}
+
+	public double getX(int slot) {
+		return poses[POSE_SIZE * slot];
+	}
+
+	public double getY(int slot) {
+		return poses[POSE_SIZE * slot + 1];
+	}
+
+	public double getZ(int slot) {
+		return poses[POSE_SIZE * slot + 2];
+	}
+
+	public double getA(int slot) {
+		return poses[POSE_SIZE * slot + 3];
+	}
+
+	public double getB(int slot) {
+		return poses[POSE_SIZE * slot + 4];
+	}
+
+	public double getC(int slot) {
+		return poses[POSE_SIZE * slot + 5];
+	}
+
+	public boolean isDirty(int slot) {
+		return slot < dirtyFlags.length && dirtyFlags[slot];
+	}
+
+	/**
+	 * Updates each relation changed since the last call once.
+	 * 
+	 * @return the number of updated relations
+	 */
+	public int applyUpdates() {
+		int count = dirtyCount;
+		for (int i = 0; i < count; i++) {
+			int slot = dirty[i];
+			dirtyFlags[slot] = false;
+			RapiRelation relation = relations[slot];
+			if (relation != null)
+				relation.performUpdate();
+		}
+		dirtyCount = 0;
+		return count;
+	}
+
+	/**
+	 * Forgets all relations and pending updates.
+	 */
+	public void clear() {
+		Arrays.fill(relations, null);
+		Arrays.fill(dirtyFlags, false);
+		dirtyCount = 0;
+	}
+
+}
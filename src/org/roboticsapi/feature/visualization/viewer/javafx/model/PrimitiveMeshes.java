@@ -0,0 +1,155 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. 
+ *
+ * Copyright 2010-2017 ISSE, University of Augsburg 
+ */
+
+package org.roboticsapi.feature.visualization.viewer.javafx.model;
+
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+import javafx.scene.transform.Scale;
+import javafx.scene.transform.Transform;
+import javafx.scene.transform.Translate;
+
+/**
+ * Viewer-wide pool of unit meshes for primitive shapes. Every primitive is a
+ * {@link MeshView} sharing the unit mesh and material, scaled to its size, so
+ * adding a primitive never tessellates. Cylinders and capsules are aligned
+ * with the z axis; all shapes are centered at the origin.
+ */
+public final class PrimitiveMeshes {
+
+	private static final int SEGMENTS = 32;
+	private static final int RINGS = 16;
+
+	/**
+	 * box with edge length 1
+	 */
+	private static final TriangleMesh BOX = createBox();
+
+	/**
+	 * sphere with radius 1
+	 */
+	private static final TriangleMesh SPHERE = createSphere();
+
+	/**
+	 * cylinder with radius 1 and height 1
+	 */
+	private static final TriangleMesh CYLINDER = createCylinder();
+
+	private static final PhongMaterial MATERIAL = new PhongMaterial(Color.LIGHTGRAY);
+
+	private PrimitiveMeshes() {
+	}
+
+	public static Node createBox(double sizeX, double sizeY, double sizeZ) {
+		return create(BOX, new Scale(sizeX, sizeY, sizeZ));
+	}
+
+	public static Node createSphere(double radius) {
+		return create(SPHERE, new Scale(radius, radius, radius));
+	}
+
+	public static Node createCylinder(double radius, double height) {
+		return create(CYLINDER, new Scale(radius, radius, height));
+	}
+
+	/**
+	 * Creates a capsule from a cylinder and two spheres.
+	 * 
+	 * @param radius the radius
+	 * @param height the distance between the centers of the hemispheres
+	 */
+	public static Node createCapsule(double radius, double height) {
+		Scale sphere = new Scale(radius, radius, radius);
+		return new Group(create(CYLINDER, new Scale(radius, radius, height)),
+				create(SPHERE, new Translate(0, 0, height / 2), sphere),
+				create(SPHERE, new Translate(0, 0, -height / 2), sphere));
+	}
+
+	private static MeshView create(TriangleMesh mesh, Transform... transforms) {
+		MeshView view = new MeshView(mesh);
+		view.setMaterial(MATERIAL);
+		view.getTransforms().addAll(transforms);
+		return view;
+	}
+
+	private static TriangleMesh createBox() {
+		TriangleMesh mesh = new TriangleMesh();
+		for (int i = 0; i < 8; i++)
+			mesh.getPoints().addAll((i & 1) - 0.5f, (i >> 1 & 1) - 0.5f, (i >> 2 & 1) - 0.5f);
+		mesh.getTexCoords().addAll(0, 0);
+		// two triangles per side, counter-clockwise seen from outside
+		int[][] sides = { { 0, 2, 3, 1 }, { 4, 5, 7, 6 }, { 0, 1, 5, 4 }, { 2, 6, 7, 3 }, { 0, 4, 6, 2 },
+				{ 1, 3, 7, 5 } };
+		for (int[] side : sides) {
+			addFace(mesh, side[0], side[1], side[2]);
+			addFace(mesh, side[0], side[2], side[3]);
+			// no smoothing between the sides
+			mesh.getFaceSmoothingGroups().addAll(0, 0);
+		}
+		return mesh;
+	}
+
+	private static TriangleMesh createSphere() {
+		TriangleMesh mesh = new TriangleMesh();
+		mesh.getTexCoords().addAll(0, 0);
+		mesh.getPoints().addAll(0, 0, -1);
+		for (int ring = 1; ring < RINGS; ring++) {
+			double polar = Math.PI * ring / RINGS;
+			for (int segment = 0; segment < SEGMENTS; segment++) {
+				double azimuth = 2 * Math.PI * segment / SEGMENTS;
+				mesh.getPoints().addAll((float) (Math.sin(polar) * Math.cos(azimuth)),
+						(float) (Math.sin(polar) * Math.sin(azimuth)), (float) -Math.cos(polar));
+			}
+		}
+		mesh.getPoints().addAll(0, 0, 1);
+		int top = 1 + (RINGS - 1) * SEGMENTS;
+		for (int segment = 0; segment < SEGMENTS; segment++) {
+			int next = (segment + 1) % SEGMENTS;
+			addFace(mesh, 0, 1 + next, 1 + segment);
+			for (int ring = 1; ring < RINGS - 1; ring++) {
+				int lower = 1 + (ring - 1) * SEGMENTS, upper = lower + SEGMENTS;
+				addFace(mesh, lower + segment, lower + next, upper + next);
+				addFace(mesh, lower + segment, upper + next, upper + segment);
+			}
+			addFace(mesh, top - SEGMENTS + segment, top - SEGMENTS + next, top);
+		}
+		for (int i = mesh.getFaces().size() / mesh.getFaceElementSize(); i > 0; i--)
+			mesh.getFaceSmoothingGroups().addAll(1);
+		return mesh;
+	}
+
+	private static TriangleMesh createCylinder() {
+		TriangleMesh mesh = new TriangleMesh();
+		mesh.getTexCoords().addAll(0, 0);
+		for (int segment = 0; segment < SEGMENTS; segment++) {
+			double azimuth = 2 * Math.PI * segment / SEGMENTS;
+			float x = (float) Math.cos(azimuth), y = (float) Math.sin(azimuth);
+			mesh.getPoints().addAll(x, y, -0.5f, x, y, 0.5f);
+		}
+		int bottom = 2 * SEGMENTS, top = bottom + 1;
+		mesh.getPoints().addAll(0, 0, -0.5f, 0, 0, 0.5f);
+		for (int segment = 0; segment < SEGMENTS; segment++) {
+			int lower = 2 * segment, next = 2 * ((segment + 1) % SEGMENTS);
+			addFace(mesh, lower, next, next + 1);
+			addFace(mesh, lower, next + 1, lower + 1);
+			addFace(mesh, bottom, next, lower);
+			addFace(mesh, top, lower + 1, next + 1);
+			// smooth mantle, flat caps
+			mesh.getFaceSmoothingGroups().addAll(1, 1, 0, 0);
+		}
+		return mesh;
+	}
+
+	private static void addFace(TriangleMesh mesh, int a, int b, int c) {
+		mesh.getFaces().addAll(a, 0, b, 0, c, 0);
+	}
+
+}
@@ -7,90 +7,238 @@
 
 package org.roboticsapi.feature.visualization.viewer.javafx.model;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import javafx.scene.Group;
+import javafx.scene.Parent;
+import javafx.scene.transform.Affine;
 import javafx.scene.transform.Transform;
 
 /**
  * Represents a Frame in the frame graph
+ * 
+ * Each frame connected to the root has a parent relation; the parent relations
+ * form a spanning tree of the connected frames. All traversals of this tree are
+ * iterative, so long chains cannot overflow the stack.
  */
 public class RapiFrame {
 	private final String name;
 	private boolean root;
-	protected List<RapiRelation> relations = new ArrayList<>();
+
+	/**
+	 * all relations from and to this frame
+	 */
+	protected Set<RapiRelation> relations = new LinkedHashSet<>();
+
+	/**
+	 * relations from this frame by target frame, created on demand
+	 */
+	private Map<RapiFrame, RapiRelation> outgoing = null;
 	private RapiRelation parentRelation = null;
-	private List<FrameListener> listeners = new ArrayList<>();
+	private List<FrameListener> listeners = null;
+
+	/**
+	 * pose store shared by the frame graph
+	 */
+	private final PoseStore poses;
+
+	/**
+	 * cached transformation from the root frame, created on demand and
+	 * recomputed lazily after it was invalidated by a change of an ancestor
+	 * relation
+	 */
+	private Affine worldTransform = null;
+	private boolean worldTransformValid = false;
+
+	/**
+	 * run whenever the world transform becomes invalid, or <code>null</code>
+	 */
+	private Runnable onWorldTransformInvalidated = null;
+
+	/**
+	 * scratch affine for recomputing world transforms (only used on the JavaFX
+	 * thread)
+	 */
+	private static final Affine scratch = new Affine();
+
+	/**
+	 * group mirroring this frame in a nested scene graph, created on demand
+	 */
+	private Group group = null;
 
 	public interface FrameListener {
 		void frameChanged(RapiFrame frame);
 	}
 
-	public RapiFrame(String name, boolean root) {
-		this.name = name;
-		this.root = root;
+	/**
+	 * frames changed while running coalesced changes on the current thread
+	 */
+	private static final ThreadLocal<Set<RapiFrame>> pendingNotifications = new ThreadLocal<>();
+
+	/**
+	 * Runs the given changes and afterwards notifies the listeners of each
+	 * affected frame exactly once.
+	 * 
+	 * @param changes the changes to run
+	 */
+	public static void runCoalesced(Runnable changes) {
+		if (pendingNotifications.get() != null) {
+			changes.run();
+			return;
+		}
+		Set<RapiFrame> pending = new LinkedHashSet<>();
+		pendingNotifications.set(pending);
+		try {
+			changes.run();
+		} finally {
+			pendingNotifications.remove();
+			for (RapiFrame frame : pending)
+				frame.notifyChanged();
+		}
 	}
 
-	public RapiFrame(String name) {
-		this(name, false);
+	/**
+	 * Creates a frame whose relations keep their poses in the given store. With
+	 * a deferred store only changed relations need to be updated.
+	 * 
+	 * @param name  the frame name
+	 * @param root  whether the frame is the root of the frame graph
+	 * @param poses the pose store shared by the frame graph
+	 */
+	public RapiFrame(String name, boolean root, PoseStore poses) {
+		this.name = name;
+		this.root = root;
+		this.poses = poses;
 	}
 
 	public boolean hasParent() {
 		return root || parentRelation != null;
 	}
 
+	/**
+	 * Disconnects this frame and the frames below it if the parent frame is no
+	 * longer connected to the root.
+	 * 
+	 * @param retDropped receives the disconnected frames
+	 */
 	public void dropParent(List<RapiFrame> retDropped) {
-		if (!hasParent())
+		if (root || parentRelation == null)
 			return;
-		if (!parentRelation.getOther(this).hasParent()) {
-			parentRelation = null;
-			notifyChanged();
-			retDropped.add(this);
-			dropParentFromLinked(retDropped);
-		}
+		if (!parentRelation.getOther(this).hasParent())
+			disconnectSubtree(retDropped);
 	}
 
 	private void notifyChanged() {
+		Set<RapiFrame> pending = pendingNotifications.get();
+		if (pending != null) {
+			pending.add(this);
+			return;
+		}
+		if (listeners == null)
+			return;
 		for (FrameListener listener : listeners)
 			listener.frameChanged(this);
 	}
 
-	private void dropParentFromLinked(List<RapiFrame> retDropped) {
-		for (RapiRelation relation : relations)
-			relation.getOther(this).dropParent(retDropped);
-	}
-
+	/**
+	 * Connects this frame to the root through any relation to a connected frame,
+	 * and then all frames linked to it which are not yet connected.
+	 * 
+	 * @param retAdded receives the connected frames
+	 */
 	public void addParent(List<RapiFrame> retAdded) {
 		if (hasParent())
 			return;
 		for (RapiRelation relation : relations) {
 			if (relation.getOther(this).hasParent()) {
-				parentRelation = relation;
-				notifyChanged();
+				setParentRelation(relation);
 				retAdded.add(this);
-				addParentToLinked(retAdded);
+				connectLinked(retAdded);
 				return;
 			}
 		}
 	}
 
-	private void addParentToLinked(List<RapiFrame> retAdded) {
-		for (RapiRelation relation : relations)
-			relation.getOther(this).addParent(retAdded);
+	private void setParentRelation(RapiRelation relation) {
+		parentRelation = relation;
+		parentChanged();
+		notifyChanged();
+	}
+
+	/**
+	 * Removes the parent relation of this frame and of all frames below it.
+	 */
+	private void disconnectSubtree(List<RapiFrame> retDropped) {
+		Deque<RapiFrame> open = new ArrayDeque<>();
+		open.push(this);
+		while (!open.isEmpty()) {
+			RapiFrame frame = open.pop();
+			for (RapiRelation relation : frame.relations) {
+				// frames whose parent relation leads to this frame
+				RapiFrame child = relation.getOther(frame);
+				if (child.parentRelation == relation)
+					open.push(child);
+			}
+			frame.setParentRelation(null);
+			retDropped.add(frame);
+		}
+	}
+
+	/**
+	 * Connects all unconnected frames reachable from this (connected) frame,
+	 * breadth first.
+	 */
+	private void connectLinked(List<RapiFrame> retAdded) {
+		Deque<RapiFrame> open = new ArrayDeque<>();
+		open.add(this);
+		while (!open.isEmpty()) {
+			RapiFrame frame = open.poll();
+			for (RapiRelation relation : frame.relations) {
+				RapiFrame other = relation.getOther(frame);
+				if (!other.hasParent()) {
+					other.setParentRelation(relation);
+					retAdded.add(other);
+					open.add(other);
+				}
+			}
+		}
 	}
 
 	public void addRelation(RapiFrame to, double x, double y, double z, double a, double b, double c) {
 		if (getRelation(to) != null)
 			return;
-		RapiRelation relation = new RapiRelation(this, to, x, y, z, a, b, c);
+		addRelation(to, poses.allocateSlot(), x, y, z, a, b, c);
+	}
+
+	/**
+	 * Adds a relation keeping its pose in the given slot of the pose store.
+	 */
+	public void addRelation(RapiFrame to, int slot, double x, double y, double z, double a, double b, double c) {
+		if (getRelation(to) != null)
+			return;
+		RapiRelation relation = new RapiRelation(this, to, poses, slot, x, y, z, a, b, c);
 		relations.add(relation);
+		if (outgoing == null)
+			outgoing = new HashMap<>();
+		outgoing.put(to, relation);
 		to.relations.add(relation);
 		relationAdded(relation);
 		to.relationAdded(relation);
 	}
 
 	public void removeRelation(RapiFrame to) {
-		RapiRelation relation = getRelation(to);
+		RapiRelation relation = outgoing == null ? null : outgoing.remove(to);
+		if (relation == null)
+			return;
+		relation.release();
 		relations.remove(relation);
 		to.relations.remove(relation);
 		relationRemoved(relation);
@@ -98,25 +246,19 @@ public class RapiFrame {
 	}
 
 	private void relationAdded(RapiRelation relation) {
-		if (parentRelation == null && relation.getOther(this).hasParent()) {
-			parentRelation = relation;
-			notifyChanged();
-
-			addParentToLinked(new ArrayList<>());
+		if (parentRelation == null && !root && relation.getOther(this).hasParent()) {
+			setParentRelation(relation);
+			connectLinked(new ArrayList<>());
 		}
 	}
 
 	private void relationRemoved(RapiRelation relation) {
 		if (relation == parentRelation) {
-			parentRelation = null;
-			notifyChanged();
-
-			// disconnect all linked frames
+			// disconnect the subtree below this frame
 			List<RapiFrame> disconnected = new ArrayList<>();
-			disconnected.add(this);
-			dropParentFromLinked(disconnected);
+			disconnectSubtree(disconnected);
 
-			// check if any is still connected and reconnect
+			// the subtree is still linked, so reconnecting one frame reconnects all
 			List<RapiFrame> reconnected = new ArrayList<>();
 			for (RapiFrame candidate : disconnected) {
 				candidate.addParent(reconnected);
@@ -127,33 +269,163 @@ public class RapiFrame {
 	}
 
 	public RapiRelation getRelation(RapiFrame to) {
-		for (RapiRelation relation : relations) {
-			if (relation.getFrom() == this && relation.getTo() == to) {
-				return relation;
-			}
-		}
-		return null;
+		return outgoing == null ? null : outgoing.get(to);
+	}
+
+	/**
+	 * Returns the path from the root frame to this frame, or an empty list if
+	 * this frame is not connected.
+	 */
+	private List<RapiFrame> getPathFromRoot() {
+		List<RapiFrame> path = new ArrayList<>();
+		for (RapiFrame frame = this; frame != null; frame = frame.getParentFrame())
+			path.add(frame);
+		if (!path.get(path.size() - 1).root)
+			path.clear();
+		Collections.reverse(path);
+		return path;
 	}
 
 	public List<Transform> getTransforms() {
 		List<Transform> result = new ArrayList<>();
-		if (root) {
-			return result;
-		} else {
-			RapiRelation _parentRelation = parentRelation;
-			if (_parentRelation == null) {
-				return result;
-			} else if (_parentRelation.getTo() == this) {
-				result.addAll(_parentRelation.getFrom().getTransforms());
+		for (RapiFrame frame : getPathFromRoot()) {
+			RapiRelation _parentRelation = frame.parentRelation;
+			if (frame.root || _parentRelation == null)
+				continue;
+			if (_parentRelation.getTo() == frame)
 				result.addAll(_parentRelation.getTransform());
-			} else {
-				result.addAll(_parentRelation.getTo().getTransforms());
+			else
 				result.addAll(_parentRelation.getInverseTransform());
-			}
 		}
 		return result;
 	}
 
+	private void parentChanged() {
+		invalidateWorldTransform();
+		updateGroup();
+	}
+
+	/**
+	 * Returns the group representing this frame in a nested scene graph. The
+	 * group holds the transformation of the parent relation and is a child of the
+	 * parent frame's group while this frame is connected to the root. Groups are
+	 * created on demand, so only frames carrying nodes (and their ancestors)
+	 * have one.
+	 */
+	public Group getGroup() {
+		if (group == null) {
+			// create missing groups from the topmost ancestor downwards
+			List<RapiFrame> missing = new ArrayList<>();
+			for (RapiFrame frame = this; frame != null && frame.group == null; frame = frame.getParentFrame())
+				missing.add(frame);
+			for (int i = missing.size() - 1; i >= 0; i--) {
+				RapiFrame frame = missing.get(i);
+				frame.group = new Group();
+				frame.updateGroup();
+			}
+		}
+		return group;
+	}
+
+	/**
+	 * Moves the group below the group of the current parent frame.
+	 */
+	private void updateGroup() {
+		if (group == null || root)
+			return;
+		Parent oldParent = group.getParent();
+		if (oldParent instanceof Group)
+			((Group) oldParent).getChildren().remove(group);
+		RapiRelation _parentRelation = parentRelation;
+		if (_parentRelation == null) {
+			group.getTransforms().clear();
+		} else {
+			group.getTransforms().setAll(_parentRelation.getTo() == this ? _parentRelation.getTransform()
+					: _parentRelation.getInverseTransform());
+			_parentRelation.getOther(this).getGroup().getChildren().add(group);
+		}
+	}
+
+	/**
+	 * Returns the cached transformation from the root frame. The returned affine
+	 * is updated in place, so it can be shared by all nodes attached to this
+	 * frame.
+	 */
+	public Affine getWorldTransform() {
+		if (worldTransform == null)
+			worldTransform = new Affine();
+		if (!worldTransformValid) {
+			// recompute invalid ancestors from the topmost one downwards
+			List<RapiFrame> invalid = new ArrayList<>();
+			for (RapiFrame frame = this; frame != null && !frame.worldTransformValid; frame = frame.getParentFrame())
+				invalid.add(frame);
+			for (int i = invalid.size() - 1; i >= 0; i--)
+				invalid.get(i).computeWorldTransform();
+		}
+		return worldTransform;
+	}
+
+	private void computeWorldTransform() {
+		if (worldTransform == null)
+			worldTransform = new Affine();
+		RapiRelation _parentRelation = parentRelation;
+		if (root || _parentRelation == null) {
+			worldTransform.setToIdentity();
+		} else {
+			scratch.setToTransform(_parentRelation.getOther(this).worldTransform);
+			if (_parentRelation.getTo() == this)
+				_parentRelation.appendTransform(scratch);
+			else
+				_parentRelation.appendInverseTransform(scratch);
+			worldTransform.setToTransform(scratch);
+		}
+		worldTransformValid = true;
+	}
+
+	/**
+	 * Marks the world transform of this frame and all frames below it as outdated.
+	 */
+	public void invalidateWorldTransform() {
+		// frames below an invalid frame are invalid as well
+		if (!worldTransformValid)
+			return;
+		Deque<RapiFrame> open = new ArrayDeque<>();
+		worldTransformInvalidated();
+		open.push(this);
+		while (!open.isEmpty()) {
+			RapiFrame frame = open.pop();
+			for (RapiRelation relation : frame.relations) {
+				RapiFrame child = relation.getOther(frame);
+				if (child.parentRelation == relation && child.worldTransformValid) {
+					child.worldTransformInvalidated();
+					open.push(child);
+				}
+			}
+		}
+	}
+
+	private void worldTransformInvalidated() {
+		worldTransformValid = false;
+		if (onWorldTransformInvalidated != null)
+			onWorldTransformInvalidated.run();
+	}
+
+	/**
+	 * Sets the action run whenever the world transform of this frame becomes
+	 * invalid, so the frames to update can be collected as they change.
+	 */
+	public void setOnWorldTransformInvalidated(Runnable onWorldTransformInvalidated) {
+		this.onWorldTransformInvalidated = onWorldTransformInvalidated;
+	}
+
+	public boolean isWorldTransformValid() {
+		return worldTransformValid;
+	}
+
+	boolean isParentRelation(RapiRelation relation) {
+		return parentRelation == relation;
+	}
+
 	public String getName() {
 		return name;
 	}
@@ -175,11 +447,14 @@ public class RapiFrame {
 	}
 
 	public void addListener(FrameListener listener) {
+		if (listeners == null)
+			listeners = new ArrayList<>(1);
 		listeners.add(listener);
 	}
 
 	public void removeListener(FrameListener listener) {
-		listeners.remove(listener);
+		if (listeners != null)
+			listeners.remove(listener);
 	}
 
 	public RapiFrame getParentFrame() {
@@ -10,62 +10,135 @@ package org.roboticsapi.feature.visualization.viewer.javafx.model;
 import java.util.Arrays;
 import java.util.List;
 
+import javafx.scene.transform.Affine;
 import javafx.scene.transform.Rotate;
 import javafx.scene.transform.Transform;
 import javafx.scene.transform.Translate;
 
+/**
+ * Relation between two frames. The pose is kept in a {@link PoseStore}; JavaFX
+ * transforms are only created once requested for rendering.
+ */
 public class RapiRelation {
 
-	private final Rotate rotatez = new Rotate(0, Rotate.Z_AXIS);
-	private final Rotate rotatey = new Rotate(0, Rotate.Y_AXIS);
-	private final Rotate rotatex = new Rotate(0, Rotate.X_AXIS);
-	private final Translate translate = new Translate(0, 0, 0);
-	private final Rotate invRotatez = new Rotate(0, Rotate.Z_AXIS);
-	private final Rotate invRotatey = new Rotate(0, Rotate.Y_AXIS);
-	private final Rotate invRotatex = new Rotate(0, Rotate.X_AXIS);
-	private final Translate invTranslate = new Translate(0, 0, 0);
-	private RapiFrame from;
-	private RapiFrame to;
-	private double x, y, z, a, b, c;
-
-	public RapiRelation(RapiFrame from, RapiFrame to, double x, double y, double z, double a, double b, double c) {
+	/**
+	 * JavaFX transforms of a relation and its inverse
+	 */
+	private static class Transforms {
+		private final Rotate rotatez = new Rotate(0, Rotate.Z_AXIS);
+		private final Rotate rotatey = new Rotate(0, Rotate.Y_AXIS);
+		private final Rotate rotatex = new Rotate(0, Rotate.X_AXIS);
+		private final Translate translate = new Translate(0, 0, 0);
+		private final Rotate invRotatez = new Rotate(0, Rotate.Z_AXIS);
+		private final Rotate invRotatey = new Rotate(0, Rotate.Y_AXIS);
+		private final Rotate invRotatex = new Rotate(0, Rotate.X_AXIS);
+		private final Translate invTranslate = new Translate(0, 0, 0);
+
+		private void update(double x, double y, double z, double a, double b, double c) {
+			translate.setX(x);
+			translate.setY(y);
+			translate.setZ(z);
+			rotatez.setAngle(Math.toDegrees(a));
+			rotatey.setAngle(Math.toDegrees(b));
+			rotatex.setAngle(Math.toDegrees(c));
+
+			invTranslate.setX(-x);
+			invTranslate.setY(-y);
+			invTranslate.setZ(-z);
+			invRotatez.setAngle(Math.toDegrees(-a));
+			invRotatey.setAngle(Math.toDegrees(-b));
+			invRotatex.setAngle(Math.toDegrees(-c));
+		}
+	}
+
+	private final RapiFrame from;
+	private final RapiFrame to;
+	private final PoseStore poses;
+	private final int slot;
+	private Transforms transforms = null;
+
+	public RapiRelation(RapiFrame from, RapiFrame to, PoseStore poses, int slot, double x, double y, double z,
+			double a, double b, double c) {
 		this.from = from;
 		this.to = to;
-		updateTransformation(x, y, z, a, b, c);
-		performUpdate();
+		this.poses = poses;
+		this.slot = slot;
+		poses.register(slot, this, x, y, z, a, b, c);
+	}
+
+	public int getSlot() {
+		return slot;
 	}
 
+	/**
+	 * Sets the pose of this relation. The relation is updated by
+	 * {@link PoseStore#applyUpdates()} if its pose store is deferred, otherwise
+	 * immediately.
+	 */
 	public void updateTransformation(double x, double y, double z, double a, double b, double c) {
-		this.x = x;
-		this.y = y;
-		this.z = z;
-		this.a = a;
-		this.b = b;
-		this.c = c;
+		poses.set(slot, x, y, z, a, b, c);
+	}
+
+	public boolean isDirty() {
+		return poses.isDirty(slot);
+	}
+
+	/**
+	 * Frees the slot of this relation after it was removed from the frame graph.
+	 */
+	void release() {
+		poses.release(slot);
 	}
 
 	public void performUpdate() {
-		translate.setX(x);
-		translate.setY(y);
-		translate.setZ(z);
-		rotatez.setAngle(Math.toDegrees(a));
-		rotatey.setAngle(Math.toDegrees(b));
-		rotatex.setAngle(Math.toDegrees(c));
+		if (from.isParentRelation(this))
+			from.invalidateWorldTransform();
+		else if (to.isParentRelation(this))
+			to.invalidateWorldTransform();
+		if (transforms != null)
+			transforms.update(poses.getX(slot), poses.getY(slot), poses.getZ(slot), poses.getA(slot),
+					poses.getB(slot), poses.getC(slot));
+	}
 
-		invTranslate.setX(-x);
-		invTranslate.setY(-y);
-		invTranslate.setZ(-z);
-		invRotatez.setAngle(Math.toDegrees(-a));
-		invRotatey.setAngle(Math.toDegrees(-b));
-		invRotatex.setAngle(Math.toDegrees(-c));
+	private Transforms getTransforms() {
+		if (transforms == null) {
+			transforms = new Transforms();
+			transforms.update(poses.getX(slot), poses.getY(slot), poses.getZ(slot), poses.getA(slot),
+					poses.getB(slot), poses.getC(slot));
+		}
+		return transforms;
 	}
 
 	public List<Transform> getTransform() {
-		return Arrays.asList(translate, rotatez, rotatey, rotatex);
+		Transforms t = getTransforms();
+		return Arrays.asList(t.translate, t.rotatez, t.rotatey, t.rotatex);
 	}
 
 	public List<Transform> getInverseTransform() {
-		return Arrays.asList(invRotatex, invRotatey, invRotatez, invTranslate);
+		Transforms t = getTransforms();
+		return Arrays.asList(t.invRotatex, t.invRotatey, t.invRotatez, t.invTranslate);
+	}
+
+	/**
+	 * Appends the transformation from {@link #getFrom()} to {@link #getTo()} to
+	 * the given affine.
+	 */
+	public void appendTransform(Affine affine) {
+		affine.appendTranslation(poses.getX(slot), poses.getY(slot), poses.getZ(slot));
+		affine.appendRotation(Math.toDegrees(poses.getA(slot)), 0, 0, 0, Rotate.Z_AXIS);
+		affine.appendRotation(Math.toDegrees(poses.getB(slot)), 0, 0, 0, Rotate.Y_AXIS);
+		affine.appendRotation(Math.toDegrees(poses.getC(slot)), 0, 0, 0, Rotate.X_AXIS);
+	}
+
+	/**
+	 * Appends the transformation from {@link #getTo()} to {@link #getFrom()} to
+	 * the given affine.
+	 */
+	public void appendInverseTransform(Affine affine) {
+		affine.appendRotation(Math.toDegrees(-poses.getC(slot)), 0, 0, 0, Rotate.X_AXIS);
+		affine.appendRotation(Math.toDegrees(-poses.getB(slot)), 0, 0, 0, Rotate.Y_AXIS);
+		affine.appendRotation(Math.toDegrees(-poses.getA(slot)), 0, 0, 0, Rotate.Z_AXIS);
+		affine.appendTranslation(-poses.getX(slot), -poses.getY(slot), -poses.getZ(slot));
 	}
 
 	public RapiFrame getFrom() {
@@ -7,277 +7,984 @@
 
 package org.roboticsapi.feature.visualization.viewer.javafx.model;
 
-import java.io.File;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.io.Serializable;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleSupplier;
 
 import org.roboticsapi.feature.visualization.RAPILogger;
+import org.roboticsapi.feature.visualization.SceneTemplate;
 import org.roboticsapi.feature.visualization.rmi.RmiVisualizationClientScene;
-
-import com.interactivemesh.jfx.importer.col.ColModelImporter;
+import org.roboticsapi.feature.visualization.tcp.TcpVisualizationProtocol;
 
 import javafx.application.Platform;
-import javafx.beans.property.BooleanProperty;
-import javafx.beans.property.SimpleBooleanProperty;
+import javafx.geometry.Point3D;
 import javafx.scene.Group;
 import javafx.scene.Node;
+import javafx.scene.PerspectiveCamera;
+import javafx.scene.shape.Box;
+import javafx.scene.shape.DrawMode;
+import javafx.scene.shape.MeshView;
+import javafx.scene.transform.Affine;
 import javafx.scene.transform.Rotate;
 import javafx.scene.transform.Transform;
-import javafx.scene.transform.Translate;
 
 /**
  * Implementation of RemoteScene
  * 
+ * The frame graph is confined to the JavaFX thread. Remote calls only enqueue
+ * edits, and pose updates are written lock-free into a {@link PoseBuffer} which
+ * is applied once per pulse by the {@link SceneUpdateScheduler}.
+ * 
  * @see org.roboticsapi.feature.visualization.VisualizationClientScene
  */
 public class RemoteSceneImpl extends UnicastRemoteObject implements RmiVisualizationClientScene, Serializable {
 
 	private static final long serialVersionUID = 1L;
 
-	private long lastCheck = Long.MAX_VALUE;
+	/**
+	 * How frames are mirrored in the JavaFX scene graph
+	 */
+	public enum SceneGraphMode {
+		/**
+		 * mesh nodes are children of the root group and carry the cached world
+		 * transform of their frame
+		 */
+		FLAT,
+		/**
+		 * each frame owns a group below its parent frame's group holding only its
+		 * local relation transform
+		 */
+		NESTED
+	}
 
-	private HighlightListener onHighlight = null;
-	private List<FrameListener> frameListeners = new ArrayList<>();
+	/**
+	 * How often the JavaFX scene graph of a scene is updated
+	 */
+	public enum Activity {
+		/**
+		 * updated with every pulse, for scenes that are shown
+		 */
+		FULL,
+		/**
+		 * updated once per second, for scenes only shown as thumbnail
+		 */
+		THUMBNAIL,
+		/**
+		 * for hidden scenes: edits are applied once per second, poses are only
+		 * kept in the pose buffer until the scene is updated again
+		 */
+		SUSPENDED
+	}
+
+	/**
+	 * interval of the updates of scenes not shown in full, in milliseconds
+	 */
+	private static final long SLOW_UPDATE_INTERVAL = 1000;
+
+	private volatile long lastCheck = Long.MAX_VALUE;
 
 	/**
-	 * used for the render loop
+	 * activity level, the time of the last update and whether edits were applied
+	 * without updating the world transforms (only accessed from the JavaFX
+	 * thread, except for the activity)
 	 */
-	private boolean alive = true;
+	private volatile Activity activity = Activity.FULL;
+	private long lastUpdate = 0;
+	private boolean transformsPending = false;
+
+	/**
+	 * number of updates that changed the scene graph
+	 */
+	private volatile long updateCount = 0;
+
+	private HighlightListener onHighlight = null;
+	private List<FrameListener> frameListeners = new ArrayList<>();
 
-	private int uid = 0;
+	private final AtomicInteger uid = new AtomicInteger();
 
 	/**
 	 * frame graph
 	 */
 	private Group rootGroup = new Group();
-	private final Map<Integer, RapiFrame> frames = new HashMap<>();
+
+	/**
+	 * frames indexed by id (only accessed from the JavaFX thread)
+	 */
+	private RapiFrame[] frames = new RapiFrame[64];
 	private final Map<Integer, RapiMesh> meshes = new HashMap<>();
+	private final Map<Integer, List<RapiMesh>> meshesByFrame = new HashMap<>();
+
+	/**
+	 * frames carrying meshes whose world transform was invalidated since the
+	 * last update (only accessed from the JavaFX thread)
+	 */
+	private final Set<Integer> movedFrames = new LinkedHashSet<>();
 	private String sceneName;
+	private final SceneGraphMode sceneGraphMode;
 	private Runnable onUpdated = null;
 
 	/**
-	 * opens tab in JavaFX window and starts render loop
+	 * edits buffered by the open transaction, <code>null</code> if no
+	 * transaction is open
+	 */
+	private volatile List<Runnable> transaction = null;
+	private int transactionDepth = 0;
+	private final Object transactionLock = new Object();
+
+	/**
+	 * committed change sets waiting to be applied with the next pulse
+	 */
+	private final Queue<List<Runnable>> committedChanges = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * pose slots of the relations by (from, to). Slots are ids handed out by
+	 * {@link #createUID()}.
+	 */
+	private final Map<Long, Integer> relationSlots = new ConcurrentHashMap<>();
+	private final PoseBuffer poses = new PoseBuffer(64);
+
+	/**
+	 * poses of the frame graph by slot, tracking the relations changed since the
+	 * last pulse (only accessed from the JavaFX thread)
+	 */
+	private final PoseStore poseStore = new PoseStore(true, this::createUID);
+
+	/**
+	 * mesh views with levels of detail by mesh id, and the camera selecting the
+	 * levels (only accessed from the JavaFX thread)
+	 */
+	private final Map<Integer, List<MeshView>> lodViews = new HashMap<>();
+	private PerspectiveCamera lodCamera = null;
+	private DoubleSupplier lodViewportHeight = null;
+
+	/**
+	 * time in milliseconds a frame must not move before its models are merged
+	 * into static batches, interval between two batching passes and maximum
+	 * number of batches built per pass
+	 */
+	private static final long STATIC_DELAY = 2000;
+	private static final long BATCH_INTERVAL = 1000;
+	private static final int MAX_BATCHES_PER_PASS = 4;
+
+	/**
+	 * static batches of single frames by model id, and the time each frame
+	 * carrying models last moved (only accessed from the JavaFX thread)
+	 */
+	private final Map<Integer, StaticBatch> batches = new HashMap<>();
+	private final Map<Integer, Long> frameMoved = new HashMap<>();
+	private long lastBatchPass = 0;
+
+	/**
+	 * registered templates by id
+	 */
+	private final Map<Integer, Template> templates = new ConcurrentHashMap<>();
+
+	/**
+	 * journal recording the calls to this scene, if any
+	 */
+	private volatile SceneJournal journal = null;
+
+	/**
+	 * A registered template with its resolved models. The model positions are
+	 * shared by all instances.
+	 */
+	private static class Template {
+		private final SceneTemplate structure;
+		private final ModelStore.Model[] models;
+		private final Transform[] modelPositions;
+
+		public Template(SceneTemplate structure, ModelStore.Model[] models, Transform[] modelPositions) {
+			this.structure = structure;
+			this.models = models;
+			this.modelPositions = modelPositions;
+		}
+	}
+
+	/**
+	 * opens tab in JavaFX window and registers the scene for updates
 	 * 
 	 * @param window    window instance
 	 * @param sceneName name will be displayed in tab
 	 */
 	public RemoteSceneImpl(String sceneName) throws RemoteException {
+		this(sceneName, SceneGraphMode.FLAT);
+	}
+
+	/**
+	 * opens tab in JavaFX window and registers the scene for updates
+	 * 
+	 * @param sceneName      name will be displayed in tab
+	 * @param sceneGraphMode how frames are mirrored in the JavaFX scene graph
+	 */
+	public RemoteSceneImpl(String sceneName, SceneGraphMode sceneGraphMode) throws RemoteException {
 		super();
 		this.sceneName = sceneName;
+		this.sceneGraphMode = sceneGraphMode;
 
-		frames.put(0, new RapiFrame("World Origin", true));
+		RapiFrame root = new RapiFrame("World Origin", true, poseStore);
+		setFrame(0, root);
+		if (sceneGraphMode == SceneGraphMode.NESTED)
+			rootGroup.getChildren().add(root.getGroup());
 
-		// Renderloop
-		Thread t = new Thread(() -> {
-			while (alive) {
-				BooleanProperty finished = new SimpleBooleanProperty(false);
-				Platform.runLater(() -> {
-					synchronized (RemoteSceneImpl.this) {
-						frames.values().forEach(frame -> frame.performUpdate());
-					}
-					if (rootGroup.getScene() != null && onUpdated != null) {
-						try {
-							onUpdated.run();
-						} catch (Exception e) {
-							RAPILogger.logException(this, e);
-						}
-					}
+		SceneUpdateScheduler.getInstance().register(this);
+	}
 
-					finished.set(true);
-				});
+	/**
+	 * Updates the scene as often as its {@link Activity} demands. Called by the
+	 * {@link SceneUpdateScheduler} once per pulse.
+	 */
+	void pulse() {
+		long now = System.currentTimeMillis();
+		Activity activity = this.activity;
+		if (activity == Activity.FULL || now - lastUpdate >= SLOW_UPDATE_INTERVAL) {
+			lastUpdate = now;
+			if (activity == Activity.SUSPENDED) {
+				// keeps the queue of change sets short, poses wait in the buffer
+				if (applyCommittedChanges())
+					transformsPending = true;
+			} else {
+				update();
+			}
+		}
+
+		if (now - lastCheck > 5000)
+			deleteScene();
+	}
+
+	/**
+	 * Applies pending edits and poses to the JavaFX scene graph.
+	 */
+	private void update() {
+		boolean changed = applyCommittedChanges() || transformsPending;
+		transformsPending = false;
+		poses.apply(poseStore::set);
+		if (poseStore.applyUpdates() > 0)
+			changed = true;
+		if (changed && sceneGraphMode == SceneGraphMode.FLAT)
+			updateWorldTransforms();
+		if (changed)
+			updateCount++;
+		if (sceneGraphMode == SceneGraphMode.FLAT)
+			batchStaticModels();
+		if (lodCamera != null && !lodViews.isEmpty())
+			updateLevelsOfDetail();
+		if (rootGroup.getScene() != null && onUpdated != null) {
+			try {
+				onUpdated.run();
+			} catch (Exception e) {
+				RAPILogger.logException(this, e);
+			}
+		}
+	}
+
+	/**
+	 * Sets how often the scene graph is updated. Poses received meanwhile are
+	 * kept, so a scene raised to {@link Activity#FULL} shows the latest poses
+	 * with the next pulse.
+	 */
+	public void setActivity(Activity activity) {
+		this.activity = activity;
+	}
+
+	public Activity getActivity() {
+		return activity;
+	}
+
+	/**
+	 * Returns the number of updates that changed the scene graph, which changes
+	 * whenever edits or poses were applied.
+	 */
+	public long getUpdateCount() {
+		return updateCount;
+	}
+
+	public void setOnUpdated(Runnable onUpdated) {
+		this.onUpdated = onUpdated;
+	}
+
+	/**
+	 * Records all further calls to this scene in the given journal, which is
+	 * closed when the scene is deleted.
+	 */
+	public void setJournal(SceneJournal journal) {
+		this.journal = journal;
+	}
+
+	@Override
+	public void beginTransaction() throws RemoteException {
+		synchronized (transactionLock) {
+			if (transactionDepth++ == 0)
+				transaction = new ArrayList<>();
+		}
+		SceneJournal journal = this.journal;
+		if (journal != null)
+			journal.beginTransaction();
+	}
+
+	@Override
+	public void commit() throws RemoteException {
+		synchronized (transactionLock) {
+			if (transactionDepth == 0)
+				throw new IllegalStateException("No transaction in progress");
+			if (--transactionDepth == 0) {
+				if (!transaction.isEmpty())
+					committedChanges.add(transaction);
+				transaction = null;
+			}
+		}
+		SceneJournal journal = this.journal;
+		if (journal != null)
+			journal.commit();
+	}
 
-				while (!finished.get()) {
-					if (!alive)
-						return;
+	/**
+	 * Buffers the edit in the open transaction, if any.
+	 * 
+	 * @return <code>true</code> if the edit was buffered
+	 */
+	private boolean addToTransaction(Runnable change) {
+		if (transaction == null)
+			return false;
+		synchronized (transactionLock) {
+			if (transaction == null)
+				return false;
+			transaction.add(change);
+			return true;
+		}
+	}
+
+	/**
+	 * Enqueues an edit of the frame graph for the next pulse, or buffers it if a
+	 * transaction is open.
+	 */
+	private void edit(Runnable change) {
+		if (!addToTransaction(change))
+			committedChanges.add(Collections.singletonList(change));
+	}
+
+	/**
+	 * Applies all committed change sets in order. Called on the JavaFX thread.
+	 * 
+	 * @return whether any change set was applied
+	 */
+	private boolean applyCommittedChanges() {
+		if (committedChanges.isEmpty())
+			return false;
+		RapiFrame.runCoalesced(() -> {
+			List<Runnable> changeSet;
+			while ((changeSet = committedChanges.poll()) != null) {
+				for (Runnable change : changeSet) {
 					try {
-						Thread.sleep(10);
-					} catch (InterruptedException e) {
+						change.run();
+					} catch (Exception e) {
+						RAPILogger.logException(this, e);
 					}
 				}
-
-				if (System.currentTimeMillis() - lastCheck > 5000)
-					deleteScene();
 			}
 		});
-		t.setDaemon(true);
-		t.start();
+		return true;
 	}
 
-	public void setOnUpdated(Runnable onUpdated) {
-		this.onUpdated = onUpdated;
+	private RapiFrame getFrame(int id) {
+		return id >= 0 && id < frames.length ? frames[id] : null;
+	}
+
+	private void setFrame(int id, RapiFrame frame) {
+		if (id >= frames.length)
+			frames = Arrays.copyOf(frames, Math.max(id + 1, 2 * frames.length));
+		frames[id] = frame;
+	}
+
+	private static long relationKey(int from, int to) {
+		return ((long) from << 32) | (to & 0xffffffffL);
+	}
+
+	/**
+	 * Returns the number of pose updates which were replaced by a newer pose
+	 * before being rendered.
+	 */
+	public long getOverwrittenPoseCount() {
+		return poses.getOverwrittenCount();
+	}
+
+	static void runOnFxThread(Runnable r) {
+		if (Platform.isFxApplicationThread())
+			r.run();
+		else
+			Platform.runLater(r);
 	}
 
 	private final int createUID() {
-		uid += 1;
-		return uid;
+		return uid.incrementAndGet();
 	}
 
 	public Group getJavaFXScene() {
 		return rootGroup;
 	}
 
+	public SceneGraphMode getSceneGraphMode() {
+		return sceneGraphMode;
+	}
+
+	@Override
+	public boolean hasModel(String modelName) throws RemoteException {
+		return ModelStore.getInstance().contains(modelName);
+	}
+
 	@Override
-	public synchronized boolean hasModel(String modelName) throws RemoteException {
-		Path p = Paths.get(System.getProperty("java.io.tmpdir"), modelName + ".dae");
-		return Files.exists(p);
+	public String[] getMissingModels(Map<String, String> models, boolean preload) throws RemoteException {
+		ModelStore store = ModelStore.getInstance();
+		List<String> missing;
+		try {
+			missing = store.link(models);
+		} catch (IOException e) {
+			throw new RemoteException("Could not check models", e);
+		}
+		if (preload) {
+			for (String modelName : models.keySet()) {
+				if (missing.contains(modelName))
+					continue;
+				ModelStore.Model stored = store.resolve(modelName);
+				if (stored == null)
+					continue;
+				try {
+					ModelImportPool.getInstance().submit(modelName, stored.getHash(), stored.getFile())
+							.whenComplete((nodes, error) -> {
+								if (error != null)
+									RAPILogger.logException(this,
+											new RemoteException("Could not preload model " + modelName, error));
+							});
+				} finally {
+					store.release(stored);
+				}
+			}
+		}
+		return missing.toArray(new String[missing.size()]);
 	}
 
 	@Override
-	public synchronized void uploadModel(String modelName, byte[] modelData, Map<String, byte[]> auxFiles)
+	public void uploadModel(String modelName, byte[] modelData, Map<String, byte[]> auxFiles)
 			throws RemoteException {
 		try {
-			Path p = Paths.get(System.getProperty("java.io.tmpdir"), modelName + ".dae");
-			OutputStream fos = Files.newOutputStream(p);
-			fos.write(modelData);
-			fos.close();
+			ModelStore.getInstance().store(modelName, modelData, auxFiles);
+		} catch (IOException e) {
+			throw new RemoteException("Could not store model " + modelName, e);
+		}
+	}
+
+	@Override
+	public void beginModelUpload(String uploadId, String modelName) throws RemoteException {
+		try {
+			ModelStore.getInstance().beginUpload(uploadId, modelName);
+		} catch (IOException e) {
+			throw new RemoteException("Could not begin upload of " + modelName, e);
+		}
+	}
+
+	@Override
+	public long appendModelChunk(String uploadId, String fileName, long offset, byte[] chunk) throws RemoteException {
+		try {
+			return ModelStore.getInstance().appendUpload(uploadId, fileName, offset, chunk);
+		} catch (IOException e) {
+			throw new RemoteException("Could not append to upload " + uploadId, e);
+		}
+	}
+
+	@Override
+	public void finishModelUpload(String uploadId, String contentHash) throws RemoteException {
+		try {
+			ModelStore.getInstance().finishUpload(uploadId, contentHash);
 		} catch (IOException e) {
-			e.printStackTrace();
+			throw new RemoteException("Could not finish upload " + uploadId, e);
 		}
 	}
 
 	@Override
-	public synchronized int addModel(String name, int parentID, String modelName, double x, double y, double z,
+	public int addModel(String name, int parentID, String modelName, double x, double y, double z,
 			double a, double b, double c) throws RemoteException {
 
-		RapiFrame parent = frames.get(parentID);
-		RapiMesh model = loadMeshFromName(modelName, name, parentID);
-		Map<Node, List<Transform>> nodePosition = new HashMap<>();
-		for (Node node : model.getNodes()) {
-			ArrayList<Transform> transform = new ArrayList<>(node.getTransforms());
-			transform.add(0, new Rotate(c, Rotate.X_AXIS));
-			transform.add(0, new Rotate(b, Rotate.Y_AXIS));
-			transform.add(0, new Rotate(a, Rotate.Z_AXIS));
-			transform.add(0, new Translate(x, y, z));
-			transform.add(new Rotate(-90, Rotate.X_AXIS));
-			nodePosition.put(node, transform);
+		ModelStore.Model stored = ModelStore.getInstance().resolve(modelName);
+		if (stored == null)
+			throw new RemoteException("Unknown model " + modelName);
+		try {
+			int uid = addModel(name, parentID, modelName, stored, createTransform(x, y, z, a, b, c));
+			record(TcpVisualizationProtocol.ADD_MODEL, uid, name, parentID, modelName, stored.getHash(),
+					new double[0], x, y, z, a, b, c);
+			return uid;
+		} finally {
+			ModelStore.getInstance().release(stored);
 		}
-		updateFrame(parent, model, nodePosition);
-		parent.addListener(frame -> updateFrame(frame, model, nodePosition));
+	}
 
-		int uid = model.getID();
-		meshes.put(uid, model);
+	/**
+	 * Adds a model replayed from a {@link SceneJournal}, preferring the recorded
+	 * content over the current version of the model.
+	 */
+	int addModel(String name, int parentID, String modelName, String contentHash, double[] pose)
+			throws RemoteException {
+		ModelStore.Model stored = contentHash == null ? null : ModelStore.getInstance().resolveHash(contentHash);
+		if (stored == null)
+			stored = ModelStore.getInstance().resolve(modelName);
+		if (stored == null)
+			throw new RemoteException("Unknown model " + modelName);
+		try {
+			int uid = addModel(name, parentID, modelName, stored,
+					createTransform(pose[0], pose[1], pose[2], pose[3], pose[4], pose[5]));
+			record(TcpVisualizationProtocol.ADD_MODEL, uid, name, parentID, modelName, stored.getHash(),
+					new double[0], pose);
+			return uid;
+		} finally {
+			ModelStore.getInstance().release(stored);
+		}
+	}
+
+	/**
+	 * Records an added model or primitive in the journal, if any.
+	 */
+	private void record(byte type, int uid, String name, int parentID, String modelName, String contentHash,
+			double[] size, double... pose) {
+		SceneJournal journal = this.journal;
+		if (journal != null)
+			journal.addMesh(type, uid, name, parentID, modelName, contentHash, size, pose);
+	}
+
+	private static Affine createTransform(double x, double y, double z, double a, double b, double c) {
+		Affine transform = new Affine();
+		transform.appendTranslation(x, y, z);
+		transform.appendRotation(a, 0, 0, 0, Rotate.Z_AXIS);
+		transform.appendRotation(b, 0, 0, 0, Rotate.Y_AXIS);
+		transform.appendRotation(c, 0, 0, 0, Rotate.X_AXIS);
+		return transform;
+	}
+
+	/**
+	 * Adds a model at the given position, which may be shared with other models.
+	 * The caller keeps the model pinned in the store until this returns.
+	 */
+	private int addModel(String name, int parentID, String modelName, ModelStore.Model stored, Transform transform) {
+		// the imported nodes are added to the container once the import finished
+		Group container = new Group(createPlaceholder());
+		int uid = addNode(name, parentID, container, transform);
+
+		ModelImportPool.getInstance().submit(modelName, stored.getHash(), stored.getFile())
+				.whenComplete((nodes, error) -> {
+					// applied with the next pulse, independent of any open transaction
+					committedChanges.add(Collections.singletonList(() -> {
+						if (error != null) {
+							container.getChildren().clear();
+							RAPILogger.logException(this,
+									new RemoteException("Could not load model " + modelName, error));
+							return;
+						}
+						for (Node node : nodes)
+							node.getTransforms().add(new Rotate(-90, Rotate.X_AXIS));
+						container.getChildren().setAll(nodes);
+						List<MeshView> views = new ArrayList<>();
+						collectLodViews(Arrays.asList(nodes), views);
+						if (!views.isEmpty() && meshes.containsKey(uid))
+							lodViews.put(uid, views);
+					}));
+				});
 
 		return uid;
 	}
 
-	private void updateFrame(RapiFrame frame, RapiMesh model, Map<Node, List<Transform>> nodePosition) {
-		Platform.runLater(() -> {
-			synchronized (RemoteSceneImpl.this) {
-				for (Node node : model.getNodes()) {
-					if (frame.hasParent()) {
-						node.getTransforms().clear();
-						node.getTransforms().addAll(frame.getTransforms());
-						node.getTransforms().addAll(nodePosition.get(node));
-						node.setVisible(true);
-					} else {
-						node.setVisible(false);
-					}
-				}
+	/**
+	 * Attaches a node to a frame at the given position, which may be shared with
+	 * other nodes.
+	 * 
+	 * @return the id of the created mesh
+	 */
+	private int addNode(String name, int parentID, Node content, Transform transform) {
+		RapiMesh model = new RapiMesh(name, new Node[] { content }, createUID(), parentID);
+		Map<Node, Transform> nodePosition = new HashMap<>();
+		nodePosition.put(content, transform);
+
+		int uid = model.getID();
+		edit(() -> {
+			RapiFrame parent = getFrame(parentID);
+			if (sceneGraphMode == SceneGraphMode.NESTED) {
+				for (Node node : model.getNodes())
+					node.getTransforms().setAll(nodePosition.get(node));
+				parent.getGroup().getChildren().addAll(model.getNodes());
+			} else {
+				rootGroup.getChildren().addAll(model.getNodes());
+				updateFrame(parent, model, nodePosition);
+				parent.addListener(frame -> updateFrame(frame, model, nodePosition));
+				parent.setOnWorldTransformInvalidated(() -> movedFrames.add(parentID));
+				movedFrames.add(parentID);
 			}
+			meshes.put(uid, model);
+			meshesByFrame.computeIfAbsent(parentID, k -> new ArrayList<>()).add(model);
+			frameMoved.put(parentID, System.currentTimeMillis());
 		});
+		return uid;
 	}
 
-	private synchronized RapiMesh loadMeshFromName(String modelName, String name, int parentID) {
-		ColModelImporter colImporter = new ColModelImporter();
-		Path p = Paths.get(System.getProperty("java.io.tmpdir"), modelName + ".dae");
-		colImporter.read(new File(p.toUri()));
+	/**
+	 * Returns a small wireframe box shown while a model is imported.
+	 */
+	private static Node createPlaceholder() {
+		Box box = new Box(0.05, 0.05, 0.05);
+		box.setDrawMode(DrawMode.LINE);
+		return box;
+	}
 
-		RapiMesh model = new RapiMesh(name, colImporter.getImport(), createUID(), parentID);
+	private void updateFrame(RapiFrame frame, RapiMesh model, Map<Node, Transform> nodePosition) {
+		for (Node node : model.getNodes()) {
+			if (frame.hasParent()) {
+				Affine world = frame.getWorldTransform();
+				if (node.getTransforms().size() != 2 || node.getTransforms().get(0) != world)
+					node.getTransforms().setAll(world, nodePosition.get(node));
+				node.setVisible(true);
+			} else {
+				node.setVisible(false);
+			}
+		}
+	}
 
-		Platform.runLater(() -> {
-			rootGroup.getChildren().addAll(model.getNodes());
-		});
+	/**
+	 * Recomputes the world transforms of the frames carrying meshes which were
+	 * invalidated since the last update, restoring the static batches of moved
+	 * models.
+	 */
+	private void updateWorldTransforms() {
+		if (movedFrames.isEmpty())
+			return;
+		long now = System.currentTimeMillis();
+		for (int frameId : movedFrames) {
+			RapiFrame frame = getFrame(frameId);
+			List<RapiMesh> models = meshesByFrame.get(frameId);
+			if (frame == null || models == null)
+				continue;
+			frameMoved.put(frameId, now);
+			for (RapiMesh model : models)
+				unmerge(batches.get(model.getID()));
+			frame.getWorldTransform();
+		}
+		movedFrames.clear();
+	}
 
-		return model;
+	/**
+	 * Merges the models of each frame which has not moved for
+	 * {@link #STATIC_DELAY} into a static batch of that frame, reducing the
+	 * number of nodes to traverse and render. Batches are built per frame, so a
+	 * moving frame only restores its own models, and at most
+	 * {@link #MAX_BATCHES_PER_PASS} batches are built per pass.
+	 */
+	private void batchStaticModels() {
+		long now = System.currentTimeMillis();
+		if (now - lastBatchPass < BATCH_INTERVAL)
+			return;
+		lastBatchPass = now;
+
+		int built = 0;
+		List<RapiMesh> candidates = new ArrayList<>();
+		for (Map.Entry<Integer, List<RapiMesh>> entry : meshesByFrame.entrySet()) {
+			if (built >= MAX_BATCHES_PER_PASS)
+				break;
+			Long moved = frameMoved.get(entry.getKey());
+			RapiFrame frame = getFrame(entry.getKey());
+			if (moved != null && now - moved < STATIC_DELAY || frame == null || !frame.hasParent())
+				continue;
+			candidates.clear();
+			for (RapiMesh model : entry.getValue()) {
+				if (!batches.containsKey(model.getID()) && StaticBatch.canMerge(model))
+					candidates.add(model);
+			}
+			if (candidates.isEmpty())
+				continue;
+			StaticBatch batch = StaticBatch.create(candidates, rootGroup);
+			if (batch == null)
+				continue;
+
+			Set<Node> replaced = new HashSet<>();
+			for (RapiMesh model : candidates) {
+				replaced.addAll(Arrays.asList(model.getNodes()));
+				batches.put(model.getID(), batch);
+			}
+			rootGroup.getChildren().removeAll(replaced);
+			rootGroup.getChildren().addAll(batch.getViews());
+			built++;
+		}
+	}
+
+	/**
+	 * Replaces a static batch by the nodes of its remaining models.
+	 */
+	private void unmerge(StaticBatch batch) {
+		if (batch == null)
+			return;
+		rootGroup.getChildren().removeAll(new HashSet<>(batch.getViews()));
+		for (RapiMesh model : batch.getModels()) {
+			batches.remove(model.getID());
+			if (meshes.containsKey(model.getID()))
+				rootGroup.getChildren().addAll(model.getNodes());
+		}
 	}
 
-	// ignoring scale
 	@Override
-	public synchronized int addBox(String name, int parentID, double sizeX, double sizeY, double sizeZ, double x,
-			double y, double z, double a, double b, double c) throws RemoteException {
-		System.out.println(
-				"addBox() is not yet implemented! See org.roboticsapi.feature.visualization.viewer.javafx.model.RemoteSceneImpl");
-		return 0;
+	public int addBox(String name, int parentID, double sizeX, double sizeY, double sizeZ, double x, double y,
+			double z, double a, double b, double c) throws RemoteException {
+		int uid = addNode(name, parentID, new Group(PrimitiveMeshes.createBox(sizeX, sizeY, sizeZ)),
+				createTransform(x, y, z, a, b, c));
+		record(TcpVisualizationProtocol.ADD_BOX, uid, name, parentID, null, null, new double[] { sizeX, sizeY, sizeZ },
+				x, y, z, a, b, c);
+		return uid;
 	}
 
 	@Override
-	public synchronized int addSphere(String name, int parentID, double radius, double x, double y, double z, double a,
-			double b, double c) throws RemoteException {
-		System.out.println(
-				"addSphere() is not yet implemented! See org.roboticsapi.feature.visualization.viewer.javafx.model.RemoteSceneImpl");
-		return 0;
+	public int addSphere(String name, int parentID, double radius, double x, double y, double z, double a, double b,
+			double c) throws RemoteException {
+		int uid = addNode(name, parentID, new Group(PrimitiveMeshes.createSphere(radius)),
+				createTransform(x, y, z, a, b, c));
+		record(TcpVisualizationProtocol.ADD_SPHERE, uid, name, parentID, null, null, new double[] { radius },
+				x, y, z, a, b, c);
+		return uid;
 	}
 
 	@Override
-	public synchronized int addFrame(String name) throws RemoteException {
-		RapiFrame frame = new RapiFrame(name);
+	public int addFrame(String name) throws RemoteException {
+		RapiFrame frame = new RapiFrame(name, false, poseStore);
 		int uid = createUID();
-		frames.put(uid, frame);
-		for (FrameListener listener : frameListeners)
-			listener.frameAdded(frame);
+		edit(() -> {
+			setFrame(uid, frame);
+			for (FrameListener listener : frameListeners)
+				listener.frameAdded(frame);
+		});
+		SceneJournal journal = this.journal;
+		if (journal != null)
+			journal.addFrame(uid, name);
 		return uid;
 	}
 
 	@Override
-	public synchronized void removeFrame(int nodeID) throws RemoteException {
-		RapiFrame frame = frames.get(nodeID);
-		if (frame != null) {
-			for (FrameListener listener : frameListeners)
-				listener.frameRemoved(frame);
-			frames.remove(nodeID);
+	public void removeFrame(int nodeID) throws RemoteException {
+		SceneJournal journal = this.journal;
+		if (journal != null)
+			journal.removeFrame(nodeID);
+		edit(() -> {
+			RapiFrame frame = getFrame(nodeID);
+			if (frame != null) {
+				for (FrameListener listener : frameListeners)
+					listener.frameRemoved(frame);
+				frames[nodeID] = null;
+			}
+			frameMoved.remove(nodeID);
+			movedFrames.remove(nodeID);
+			List<RapiMesh> frameMeshes = meshesByFrame.remove(nodeID);
+			if (frameMeshes != null) {
+				for (RapiMesh mesh : frameMeshes) {
+					removeMesh(mesh);
+					meshes.remove(mesh.getID());
+				}
+			}
+		});
+	}
+
+	private static void collectLodViews(Iterable<Node> nodes, List<MeshView> views) {
+		for (Node node : nodes) {
+			if (node instanceof MeshView && LodMesh.get((MeshView) node) != null)
+				views.add((MeshView) node);
+			else if (node instanceof Group)
+				collectLodViews(((Group) node).getChildren(), views);
 		}
-		for (Entry<Integer, RapiMesh> e : new HashSet<>(meshes.entrySet())) {
-			if (e.getValue().getParentID() == nodeID) {
-				int uid = e.getKey();
-				removeMesh(e.getValue());
-				meshes.remove(uid);
+	}
+
+	/**
+	 * Sets the camera whose view selects the levels of detail of the models.
+	 * 
+	 * @param camera         the camera, or <code>null</code> to keep the current
+	 *                       levels
+	 * @param viewportHeight height of the camera's viewport in pixels
+	 */
+	public void setLodCamera(PerspectiveCamera camera, DoubleSupplier viewportHeight) {
+		lodCamera = camera;
+		lodViewportHeight = viewportHeight;
+	}
+
+	/**
+	 * Switches each model mesh to the level of detail matching its projected
+	 * size.
+	 */
+	private void updateLevelsOfDetail() {
+		Transform cameraTransform = lodCamera.getLocalToSceneTransform();
+		Point3D eye = new Point3D(cameraTransform.getTx(), cameraTransform.getTy(), cameraTransform.getTz());
+		double pixelsPerUnit = lodViewportHeight.getAsDouble()
+				/ Math.tan(Math.toRadians(lodCamera.getFieldOfView()) / 2);
+		for (List<MeshView> views : lodViews.values()) {
+			for (MeshView view : views) {
+				LodMesh lod = LodMesh.get(view);
+				Transform transform = view.getLocalToSceneTransform();
+				double radius = lod.getRadius() * Math.cbrt(Math.abs(transform.determinant()));
+				double distance = Math.max(lodCamera.getNearClip(), transform.transform(lod.getCenter()).distance(eye));
+				int current = lod.getLevel(view);
+				int level = lod.selectLevel(radius / distance * pixelsPerUnit, current);
+				if (level != current)
+					view.setMesh(lod.getLevels()[level]);
 			}
 		}
 	}
 
 	private void removeMesh(RapiMesh mesh) {
-		Platform.runLater(() -> {
-			rootGroup.getChildren().removeAll(mesh.getNodes());
-		});
+		lodViews.remove(mesh.getID());
+		unmerge(batches.get(mesh.getID()));
+		for (Node node : mesh.getNodes()) {
+			if (node.getParent() instanceof Group)
+				((Group) node.getParent()).getChildren().remove(node);
+		}
 	}
 
 	@Override
-	public synchronized void addRelation(int from, int to, double x, double y, double z, double a, double b, double c)
+	public void addRelation(int from, int to, double x, double y, double z, double a, double b, double c)
 			throws RemoteException {
-		frames.get(from).addRelation(frames.get(to), x, y, z, a, b, c);
+		int slot = relationSlots.computeIfAbsent(relationKey(from, to), k -> createUID());
+		SceneJournal journal = this.journal;
+		if (journal != null)
+			journal.addRelation(from, to, new double[] { x, y, z, a, b, c });
+		edit(() -> {
+			getFrame(from).addRelation(getFrame(to), slot, x, y, z, a, b, c);
+		});
 	}
 
 	@Override
-	public synchronized void removeRelation(int from, int to) throws RemoteException {
-		frames.get(from).removeRelation(frames.get(to));
+	public void removeRelation(int from, int to) throws RemoteException {
+		relationSlots.remove(relationKey(from, to));
+		SceneJournal journal = this.journal;
+		if (journal != null)
+			journal.removeRelation(from, to);
+		edit(() -> getFrame(from).removeRelation(getFrame(to)));
 	}
 
 	@Override
-	public synchronized void updateTransformation(int parent, int child, double x, double y, double z, double a,
+	public int registerTemplate(SceneTemplate template) throws RemoteException {
+		ModelStore.Model[] models = new ModelStore.Model[template.getModelCount()];
+		Transform[] positions = new Transform[models.length];
+		for (int i = 0; i < models.length; i++) {
+			models[i] = ModelStore.getInstance().resolve(template.getModelAsset(i));
+			if (models[i] == null)
+				throw new RemoteException("Unknown model " + template.getModelAsset(i));
+			ModelStore.getInstance().release(models[i]);
+			double[] p = template.getModelPose(i);
+			positions[i] = createTransform(p[0], p[1], p[2], p[3], p[4], p[5]);
+		}
+		int id = createUID();
+		templates.put(id, new Template(template, models, positions));
+		return id;
+	}
+
+	SceneTemplate getTemplate(int templateId) {
+		Template template = templates.get(templateId);
+		return template == null ? null : template.structure;
+	}
+
+	@Override
+	public int[] instantiateTemplate(int templateId, String[] instanceNames, int parentFrame)
+			throws RemoteException {
+		Template template = templates.get(templateId);
+		if (template == null)
+			throw new RemoteException("Unknown template " + templateId);
+		SceneTemplate structure = template.structure;
+		int frameCount = structure.getFrameCount();
+		int[] frameIds = new int[instanceNames.length * frameCount];
+
+		// the models are resolved again, since they may have been evicted since
+		// the template was registered
+		ModelStore store = ModelStore.getInstance();
+		ModelStore.Model[] models = new ModelStore.Model[template.models.length];
+		// all instances become visible with the same pulse
+		beginTransaction();
+		try {
+			for (int m = 0; m < models.length; m++) {
+				models[m] = store.resolveHash(template.models[m].getHash());
+				if (models[m] == null)
+					throw new RemoteException("Unknown model " + structure.getModelAsset(m));
+			}
+			for (int i = 0; i < instanceNames.length; i++) {
+				String prefix = instanceNames[i] + "/";
+				for (int f = 0; f < frameCount; f++)
+					frameIds[i * frameCount + f] = addFrame(prefix + structure.getFrameName(f));
+				for (int r = 0; r < structure.getRelationCount(); r++) {
+					double[] p = structure.getRelationPose(r);
+					addRelation(structure.getFrameId(frameIds, i, structure.getRelationFrom(r), parentFrame),
+							structure.getFrameId(frameIds, i, structure.getRelationTo(r), parentFrame), p[0], p[1],
+							p[2], p[3], p[4], p[5]);
+				}
+				for (int m = 0; m < structure.getModelCount(); m++) {
+					String name = prefix + structure.getModelName(m);
+					int frame = structure.getFrameId(frameIds, i, structure.getModelFrame(m), parentFrame);
+					int uid = addModel(name, frame, structure.getModelAsset(m), models[m],
+							template.modelPositions[m]);
+					record(TcpVisualizationProtocol.ADD_MODEL, uid, name, frame, structure.getModelAsset(m),
+							models[m].getHash(), new double[0], structure.getModelPose(m));
+				}
+			}
+		} finally {
+			for (ModelStore.Model model : models) {
+				if (model != null)
+					store.release(model);
+			}
+			commit();
+		}
+		return frameIds;
+	}
+
+	@Override
+	public void updateTransformation(int parent, int child, double x, double y, double z, double a,
 			double b, double c) throws RemoteException {
-		frames.get(parent).updateRelation(frames.get(child), x, y, z, a, b, c);
+		updateTransformations(new int[] { parent }, new int[] { child }, new double[] { x, y, z, a, b, c });
+	}
+
+	@Override
+	public void updateTransformations(int[] from, int[] to, double[] poses) throws RemoteException {
+		if (from.length != to.length || poses.length != 6 * from.length)
+			throw new IllegalArgumentException(
+					"Expected 6 pose values per relation, got " + poses.length + " for " + from.length + " relations");
+		SceneJournal journal = this.journal;
+		if (journal != null)
+			journal.updatePoses(from, to, poses);
+		// poses within a transaction are applied together with its structural edits
+		boolean buffered = addToTransaction(() -> {
+			for (int i = 0; i < from.length; i++) {
+				int p = 6 * i;
+				getFrame(from[i]).updateRelation(getFrame(to[i]), poses[p], poses[p + 1], poses[p + 2],
+						poses[p + 3], poses[p + 4], poses[p + 5]);
+			}
+		});
+		if (buffered)
+			return;
+		for (int i = 0; i < from.length; i++) {
+			Integer slot = relationSlots.get(relationKey(from[i], to[i]));
+			if (slot == null)
+				continue;
+			int p = 6 * i;
+			this.poses.write(slot, poses[p], poses[p + 1], poses[p + 2], poses[p + 3], poses[p + 4], poses[p + 5]);
+		}
 	}
 
 	@Override
-	public synchronized boolean isValid() throws RemoteException {
+	public boolean isValid() throws RemoteException {
 		lastCheck = System.currentTimeMillis();
 		return true;
 	}
 
 	@Override
-	public synchronized void highlight() throws RemoteException {
+	public void highlight() throws RemoteException {
 		if (onHighlight != null)
 			onHighlight.run(this);
 	}
@@ -286,17 +993,25 @@ public class RemoteSceneImpl extends UnicastRemoteObject implements RmiVisualiza
 		this.onHighlight = onHighlight;
 	}
 
-	public synchronized void addFrameListener(FrameListener listener) {
+	/**
+	 * Adds a frame listener. Must be called on the JavaFX thread.
+	 */
+	public void addFrameListener(FrameListener listener) {
 		frameListeners.add(listener);
-		for (RapiFrame frame : frames.values()) {
-			listener.frameAdded(frame);
+		for (RapiFrame frame : frames) {
+			if (frame != null)
+				listener.frameAdded(frame);
 		}
 	}
 
-	public synchronized void removeFrameListener(FrameListener listener) {
+	/**
+	 * Removes a frame listener. Must be called on the JavaFX thread.
+	 */
+	public void removeFrameListener(FrameListener listener) {
 		frameListeners.remove(listener);
-		for (RapiFrame frame : frames.values()) {
-			listener.frameRemoved(frame);
+		for (RapiFrame frame : frames) {
+			if (frame != null)
+				listener.frameRemoved(frame);
 		}
 	}
 
@@ -336,12 +1051,36 @@ public class RemoteSceneImpl extends UnicastRemoteObject implements RmiVisualiza
 	}
 
 	/**
-	 * deletes the representing tab and stops the render loop
+	 * deletes the representing tab and stops updating the scene
 	 */
-	public synchronized void deleteScene() {
-		alive = false;
-		frames.clear();
-		meshes.clear();
+	public void deleteScene() {
+		SceneUpdateScheduler.getInstance().unregister(this);
+		SceneJournal journal = this.journal;
+		this.journal = null;
+		if (journal != null) {
+			try {
+				journal.close();
+			} catch (IOException e) {
+				RAPILogger.logException(this, e);
+			}
+		}
+		synchronized (transactionLock) {
+			transaction = null;
+			transactionDepth = 0;
+		}
+		committedChanges.clear();
+		relationSlots.clear();
+		templates.clear();
+		runOnFxThread(() -> {
+			Arrays.fill(frames, null);
+			meshes.clear();
+			meshesByFrame.clear();
+			lodViews.clear();
+			batches.clear();
+			frameMoved.clear();
+			movedFrames.clear();
+			poseStore.clear();
+		});
 	}
 
 	@Override
@@ -352,19 +1091,21 @@ public class RemoteSceneImpl extends UnicastRemoteObject implements RmiVisualiza
 	@Override
 	public int addCylinder(String name, int parentID, double radius, double height, double x, double y, double z,
 			double a, double b, double c) throws RemoteException {
-		System.out.println(
-				"addCylinder() is not yet implemented! See org.roboticsapi.feature.visualization.viewer.javafx.model.RemoteSceneImpl");
-
-		return 0;
+		int uid = addNode(name, parentID, new Group(PrimitiveMeshes.createCylinder(radius, height)),
+				createTransform(x, y, z, a, b, c));
+		record(TcpVisualizationProtocol.ADD_CYLINDER, uid, name, parentID, null, null, new double[] { radius, height },
+				x, y, z, a, b, c);
+		return uid;
 	}
 
 	@Override
 	public int addCapsule(String name, int parentID, double radius, double height, double x, double y, double z,
 			double a, double b, double c) throws RemoteException {
-		System.out.println(
-				"addCylinder() is not yet implemented! See org.roboticsapi.feature.visualization.viewer.javafx.model.RemoteSceneImpl");
-
-		return 0;
+		int uid = addNode(name, parentID, new Group(PrimitiveMeshes.createCapsule(radius, height)),
+				createTransform(x, y, z, a, b, c));
+		record(TcpVisualizationProtocol.ADD_CAPSULE, uid, name, parentID, null, null, new double[] { radius, height },
+				x, y, z, a, b, c);
+		return uid;
 	}
 
 	@Override
@@ -22,8 +22,15 @@ import org.roboticsapi.feature.visualization.rmi.RmiVisualizationClientScene;
  */
 public abstract class RmiRemoteSceneFactoryImpl extends UnicastRemoteObject implements RmiVisualizationClient {
 
+	private final RemoteSceneImpl.SceneGraphMode sceneGraphMode;
+
 	protected RmiRemoteSceneFactoryImpl() throws RemoteException {
+		this(RemoteSceneImpl.SceneGraphMode.FLAT);
+	}
+
+	protected RmiRemoteSceneFactoryImpl(RemoteSceneImpl.SceneGraphMode sceneGraphMode) throws RemoteException {
 		super();
+		this.sceneGraphMode = sceneGraphMode;
 	}
 
 	private static final long serialVersionUID = 1L;
@@ -37,7 +44,7 @@ public abstract class RmiRemoteSceneFactoryImpl extends UnicastRemoteObject impl
 	@Override
 	public final RmiVisualizationClientScene createScene(String name, boolean allowSelection) throws RemoteException {
 		// TODO: allowSelection??
-		RemoteSceneImpl remote = new RemoteSceneImpl(name);
+		RemoteSceneImpl remote = new RemoteSceneImpl(name, sceneGraphMode);
 		remoteScenes.add(remote);
 		onSceneAdded(remote);
 		return remote;
@@ -0,0 +1,334 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. 
+ *
+ * Copyright 2010-2017 ISSE, University of Augsburg 
+ */
+
+package org.roboticsapi.feature.visualization.viewer.javafx.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.roboticsapi.feature.visualization.RAPILogger;
+import org.roboticsapi.feature.visualization.tcp.TcpVisualizationProtocol;
+
+/**
+ * Append-only journal of the calls to a {@link RemoteSceneImpl}, replayed by
+ * the {@link SceneJournalPlayer}.
+ * 
+ * The file starts with a header ({@link #MAGIC}, {@link #VERSION}, start time
+ * in milliseconds since the epoch) followed by records. Each record consists
+ * of its length (int, not including the length), the type (byte), the time in
+ * nanoseconds since the start (long) and the payload. Record types are the
+ * {@link TcpVisualizationProtocol} operations, {@link #KEYFRAME} and
+ * {@link #INDEX}. A keyframe holding the complete {@link JournalState} is
+ * written at the start and every {@link #KEYFRAME_INTERVAL} outside of
+ * transactions. Closing the journal appends an index of the keyframes, and
+ * ends the file with the offset of the index record (long) and {@link #MAGIC};
+ * journals which were not closed are scanned instead.
+ * 
+ * The file is written through memory mapped regions, so recording costs no
+ * system call per record and the data survives a crash of the viewer. Since a
+ * mapped file cannot be truncated on all platforms, a closed file keeps the
+ * size of its last region. A journal reaching {@link #MAX_SIZE} is continued in
+ * a part file with the suffix <code>-1</code>, <code>-2</code> and so on, which
+ * starts with a keyframe and is followed by the {@link SceneJournalPlayer}.
+ */
+public class SceneJournal implements Closeable {
+
+	public static final int MAGIC = 0x524a4e4c; // "RJNL"
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 4 + 4 + 8;
+	public static final String FILE_EXTENSION = ".rjnl";
+
+	public static final byte KEYFRAME = 100;
+	public static final byte INDEX = 101;
+
+	/**
+	 * size of a record header: length, type and time
+	 */
+	static final int RECORD_HEADER_SIZE = 4 + 1 + 8;
+
+	/**
+	 * size of a pose record: relation (from, to) and six floats
+	 */
+	static final int POSE_RECORD_SIZE = 2 * 4 + 6 * 4;
+
+	static final long KEYFRAME_INTERVAL = 5_000_000_000L;
+	static final long MAX_SIZE = Integer.MAX_VALUE - (64L << 20);
+	private static final int REGION_SIZE = 16 << 20;
+
+	private final Path directory;
+	private final String baseName;
+	private int part = 0;
+
+	private FileChannel channel;
+	private Path file;
+	private MappedByteBuffer region;
+	private long regionStart;
+	private long startNanos;
+
+	/**
+	 * position of the last record in the current region, whose length is
+	 * corrected once its payload is written
+	 */
+	private int recordStart = -1;
+
+	private final JournalState state = new JournalState();
+	private final List<long[]> keyframes = new ArrayList<>();
+	private long lastKeyframe;
+	private int transactionDepth = 0;
+	private boolean failed = false;
+
+	/**
+	 * Creates a journal in the given directory, named after the scene and the
+	 * current time.
+	 */
+	public SceneJournal(Path directory, String sceneName) throws IOException {
+		this.directory = directory;
+		this.baseName = sceneName.replaceAll("[^A-Za-z0-9_-]+", "_") + "-"
+				+ new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+		open();
+	}
+
+	public synchronized Path getFile() {
+		return file;
+	}
+
+	private void open() throws IOException {
+		file = directory.resolve(baseName + (part == 0 ? "" : "-" + part) + FILE_EXTENSION);
+		part++;
+		channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		regionStart = 0;
+		recordStart = -1;
+		region = channel.map(MapMode.READ_WRITE, 0, REGION_SIZE);
+		region.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis());
+		startNanos = System.nanoTime();
+		keyframes.clear();
+		writeKeyframe(0);
+	}
+
+	private long position() {
+		return regionStart + region.position();
+	}
+
+	/**
+	 * Replaces the reserved length of the last record by its actual length.
+	 */
+	private void completeRecord() {
+		if (recordStart >= 0)
+			region.putInt(recordStart, region.position() - recordStart - 4);
+		recordStart = -1;
+	}
+
+	/**
+	 * Starts a record, continuing in a new region or file if necessary.
+	 * 
+	 * @param payloadSize an upper bound for the size of the payload
+	 * @return the buffer to write the payload to
+	 */
+	private ByteBuffer begin(byte type, long time, int payloadSize) throws IOException {
+		completeRecord();
+		int size = RECORD_HEADER_SIZE + payloadSize;
+		if (region.remaining() < size) {
+			// the index always fits into the reserve above the maximum size
+			if (type != INDEX && position() + size > MAX_SIZE) {
+				finish();
+				open();
+				time = 0;
+			}
+			regionStart = position();
+			region = channel.map(MapMode.READ_WRITE, regionStart, Math.max(REGION_SIZE, size));
+		}
+		recordStart = region.position();
+		region.putInt(size - 4).put(type).putLong(time);
+		return region;
+	}
+
+	private void writeKeyframe(long time) throws IOException {
+		long offset = position();
+		state.write(begin(KEYFRAME, time, state.sizeOf()));
+		keyframes.add(new long[] { time, offset });
+		lastKeyframe = time;
+	}
+
+	/**
+	 * Appends a record, preceded by a keyframe if one is due.
+	 */
+	private ByteBuffer append(byte type, int payloadSize) throws IOException {
+		long time = System.nanoTime() - startNanos;
+		if (transactionDepth == 0 && time - lastKeyframe >= KEYFRAME_INTERVAL)
+			writeKeyframe(time);
+		return begin(type, time, payloadSize);
+	}
+
+	/**
+	 * Stops journaling after a write error instead of failing the scene.
+	 */
+	private void fail(IOException e) {
+		failed = true;
+		RAPILogger.logException(this, e);
+	}
+
+	public synchronized void addFrame(int id, String name) {
+		state.addFrame(id, name);
+		if (failed)
+			return;
+		try {
+			ByteBuffer record = append(TcpVisualizationProtocol.ADD_FRAME, 4 + TcpVisualizationProtocol.sizeOf(name));
+			record.putInt(id);
+			TcpVisualizationProtocol.putString(record, name);
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	public synchronized void removeFrame(int id) {
+		state.removeFrame(id);
+		if (failed)
+			return;
+		try {
+			append(TcpVisualizationProtocol.REMOVE_FRAME, 4).putInt(id);
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	public synchronized void addRelation(int from, int to, double[] pose) {
+		state.addRelation(from, to, pose.clone());
+		if (failed)
+			return;
+		try {
+			ByteBuffer record = append(TcpVisualizationProtocol.ADD_RELATION, 2 * 4 + 6 * 8);
+			record.putInt(from).putInt(to);
+			JournalState.putDoubles(record, pose);
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	public synchronized void removeRelation(int from, int to) {
+		state.removeRelation(from, to);
+		if (failed)
+			return;
+		try {
+			append(TcpVisualizationProtocol.REMOVE_RELATION, 2 * 4).putInt(from).putInt(to);
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/**
+	 * Records pose updates of several relations, see
+	 * {@link RemoteSceneImpl#updateTransformations(int[], int[], double[])}.
+	 * Poses are stored as floats.
+	 */
+	public synchronized void updatePoses(int[] from, int[] to, double[] poses) {
+		double[] pose = new double[6];
+		for (int i = 0; i < from.length; i++) {
+			System.arraycopy(poses, 6 * i, pose, 0, 6);
+			state.updatePose(from[i], to[i], pose);
+		}
+		if (failed)
+			return;
+		try {
+			ByteBuffer record = append(TcpVisualizationProtocol.UPDATE_POSES, 4 + from.length * POSE_RECORD_SIZE);
+			record.putInt(from.length);
+			for (int i = 0; i < from.length; i++) {
+				record.putInt(from[i]).putInt(to[i]);
+				for (int p = 6 * i; p < 6 * i + 6; p++)
+					record.putFloat((float) poses[p]);
+			}
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/**
+	 * Records an added model or primitive.
+	 * 
+	 * @param type        the {@link TcpVisualizationProtocol} operation
+	 * @param modelName   the model name, <code>null</code> for primitives
+	 * @param contentHash the content hash of the model, <code>null</code> for
+	 *                    primitives
+	 * @param size        the size parameters of a primitive
+	 */
+	public synchronized void addMesh(byte type, int id, String name, int frame, String modelName, String contentHash,
+			double[] size, double[] pose) {
+		JournalState.Mesh mesh = new JournalState.Mesh(type, name, frame, modelName, contentHash, size, pose);
+		state.addMesh(id, mesh);
+		if (failed)
+			return;
+		try {
+			JournalState single = new JournalState();
+			single.addMesh(id, mesh);
+			ByteBuffer record = append(type, single.sizeOf());
+			single.write(record);
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	public synchronized void beginTransaction() {
+		transactionDepth++;
+		appendMarker(TcpVisualizationProtocol.BEGIN_TRANSACTION);
+	}
+
+	public synchronized void commit() {
+		if (transactionDepth > 0)
+			transactionDepth--;
+		appendMarker(TcpVisualizationProtocol.COMMIT);
+	}
+
+	private void appendMarker(byte type) {
+		if (failed)
+			return;
+		try {
+			append(type, 0);
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/**
+	 * Writes the keyframe index, followed by the offset of the index and
+	 * {@link #MAGIC} at the end of the last region.
+	 */
+	private void finish() throws IOException {
+		long indexOffset = position();
+		ByteBuffer record = begin(INDEX, System.nanoTime() - startNanos, 4 + keyframes.size() * 16 + 8 + 4);
+		record.putInt(keyframes.size());
+		for (long[] keyframe : keyframes)
+			record.putLong(keyframe[0]).putLong(keyframe[1]);
+		completeRecord();
+		int trailer = region.capacity() - 8 - 4;
+		region.putLong(trailer, indexOffset).putInt(trailer + 8, MAGIC);
+		region.force();
+		region = null;
+		channel.close();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (channel == null || !channel.isOpen())
+			return;
+		if (failed) {
+			channel.close();
+			return;
+		}
+		finish();
+	}
+
+}
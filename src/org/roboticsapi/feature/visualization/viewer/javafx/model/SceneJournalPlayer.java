@@ -0,0 +1,580 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. 
+ *
+ * Copyright 2010-2017 ISSE, University of Augsburg 
+ */
+
+package org.roboticsapi.feature.visualization.viewer.javafx.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.roboticsapi.feature.visualization.RAPILogger;
+import org.roboticsapi.feature.visualization.tcp.TcpVisualizationProtocol;
+import org.roboticsapi.feature.visualization.viewer.javafx.model.RemoteSceneImpl.SceneGraphMode;
+
+/**
+ * Replays a {@link SceneJournal} into a {@link RemoteSceneImpl}. Seeking
+ * restores the nearest keyframe before the target time and applies the
+ * following records to the keyframe state only, so seeking costs at most one
+ * keyframe interval of records plus rebuilding the scene once. Playing forward
+ * applies the records to the scene as recorded.
+ * 
+ * Since seeking backwards rebuilds the scene, the current scene is replaced by
+ * a new one, which is reported to the scene listener. Journals continued in
+ * part files are replayed as one journal.
+ */
+public class SceneJournalPlayer implements Closeable {
+
+	/**
+	 * A file of the journal
+	 */
+	private static class Part {
+		private final FileChannel channel;
+		private final MappedByteBuffer buffer;
+
+		/**
+		 * time of the start of the part since the start of the journal
+		 */
+		private long startNanos;
+
+		/**
+		 * end of the records
+		 */
+		private int end;
+
+		private Part(FileChannel channel, MappedByteBuffer buffer) {
+			this.channel = channel;
+			this.buffer = buffer;
+		}
+	}
+
+	private final Part[] parts;
+	private final long startMillis;
+	private final String sceneName;
+	private final SceneGraphMode sceneGraphMode;
+
+	/**
+	 * times, parts and offsets of the keyframes
+	 */
+	private final long[] keyframeTimes;
+	private final int[] keyframeParts;
+	private final int[] keyframeOffsets;
+
+	/**
+	 * time of the last record
+	 */
+	private final long duration;
+
+	private final JournalState state = new JournalState();
+	private RemoteSceneImpl scene = null;
+	private Consumer<RemoteSceneImpl> onSceneChanged = null;
+
+	/**
+	 * frame ids of the replayed scene by recorded frame id
+	 */
+	private final Map<Integer, Integer> frameIds = new HashMap<>();
+	private int transactionDepth = 0;
+
+	/**
+	 * part and offset of the next record, and current time
+	 */
+	private int part;
+	private int position;
+	private long time = -1;
+
+	private volatile double speed = 1;
+	private Thread player = null;
+
+	/**
+	 * Opens a journal and its part files.
+	 * 
+	 * @param file           the first file of the journal
+	 * @param sceneGraphMode the mode of the replayed scenes
+	 * @throws IOException if the file is no journal
+	 */
+	public SceneJournalPlayer(Path file, SceneGraphMode sceneGraphMode) throws IOException {
+		this.sceneGraphMode = sceneGraphMode;
+		String fileName = file.getFileName().toString();
+		this.sceneName = fileName.endsWith(SceneJournal.FILE_EXTENSION)
+				? fileName.substring(0, fileName.length() - SceneJournal.FILE_EXTENSION.length())
+				: fileName;
+
+		List<Part> parts = new ArrayList<>();
+		List<long[]> keyframes = new ArrayList<>();
+		long lastTime = 0;
+		try {
+			Path partFile = file;
+			do {
+				Part part = open(partFile);
+				parts.add(part);
+				// parts are timed from their own start, which was after the end of
+				// the previous part
+				long startMillis = part.buffer.getLong(8) - parts.get(0).buffer.getLong(8);
+				part.startNanos = Math.max(lastTime, startMillis * 1_000_000L);
+				lastTime = Math.max(lastTime, scan(part, parts.size() - 1, keyframes));
+				partFile = file.resolveSibling(sceneName + "-" + parts.size() + SceneJournal.FILE_EXTENSION);
+			} while (Files.exists(partFile));
+		} catch (IOException | RuntimeException e) {
+			for (Part part : parts)
+				part.channel.close();
+			throw e;
+		}
+		this.parts = parts.toArray(new Part[parts.size()]);
+		startMillis = this.parts[0].buffer.getLong(8);
+		if (keyframes.isEmpty())
+			throw new IOException("Journal contains no keyframe: " + file);
+		duration = lastTime;
+		keyframeTimes = new long[keyframes.size()];
+		keyframeParts = new int[keyframes.size()];
+		keyframeOffsets = new int[keyframes.size()];
+		for (int i = 0; i < keyframes.size(); i++) {
+			keyframeTimes[i] = keyframes.get(i)[0];
+			keyframeParts[i] = (int) keyframes.get(i)[1];
+			keyframeOffsets[i] = (int) keyframes.get(i)[2];
+		}
+	}
+
+	private static Part open(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.limit() < SceneJournal.HEADER_SIZE || buffer.getInt(0) != SceneJournal.MAGIC)
+				throw new IOException("Not a scene journal: " + file);
+			if (buffer.getInt(4) != SceneJournal.VERSION)
+				throw new IOException("Unsupported journal version " + buffer.getInt(4) + ": " + file);
+			return new Part(channel, buffer);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Determines the end of the records of a part and adds its keyframes.
+	 * 
+	 * @return the time of the last record since the start of the journal
+	 */
+	private static long scan(Part part, int index, List<long[]> keyframes) {
+		MappedByteBuffer buffer = part.buffer;
+		long lastTime = 0;
+		int indexOffset = findIndex(buffer);
+		if (indexOffset >= 0) {
+			// closed journal, the index record ends the records
+			int count = buffer.getInt(indexOffset + SceneJournal.RECORD_HEADER_SIZE);
+			for (int i = 0; i < count; i++) {
+				int entry = indexOffset + SceneJournal.RECORD_HEADER_SIZE + 4 + 16 * i;
+				keyframes.add(new long[] { part.startNanos + buffer.getLong(entry), index, buffer.getLong(entry + 8) });
+			}
+			part.end = indexOffset;
+			lastTime = buffer.getLong(indexOffset + 5);
+		} else {
+			// journal of a crashed viewer, the records end at the first unwritten
+			// (zero) length
+			int offset = SceneJournal.HEADER_SIZE;
+			while (offset + SceneJournal.RECORD_HEADER_SIZE <= buffer.limit()) {
+				int length = buffer.getInt(offset);
+				if (length < SceneJournal.RECORD_HEADER_SIZE - 4 || offset + 4 + length > buffer.limit()
+						|| buffer.get(offset + 4) == SceneJournal.INDEX)
+					break;
+				lastTime = buffer.getLong(offset + 5);
+				if (buffer.get(offset + 4) == SceneJournal.KEYFRAME)
+					keyframes.add(new long[] { part.startNanos + lastTime, index, offset });
+				offset += 4 + length;
+			}
+			part.end = offset;
+		}
+		return part.startNanos + lastTime;
+	}
+
+	/**
+	 * Returns the offset of the index record of a closed journal, or -1.
+	 */
+	private static int findIndex(MappedByteBuffer buffer) {
+		int trailer = buffer.limit() - 12;
+		if (trailer < SceneJournal.HEADER_SIZE || buffer.getInt(trailer + 8) != SceneJournal.MAGIC)
+			return -1;
+		long offset = buffer.getLong(trailer);
+		if (offset < SceneJournal.HEADER_SIZE || offset >= trailer
+				|| buffer.get((int) offset + 4) != SceneJournal.INDEX)
+			return -1;
+		return (int) offset;
+	}
+
+	/**
+	 * Sets the listener notified whenever the player replaces its scene. It is
+	 * called from the thread seeking the journal.
+	 */
+	public void setOnSceneChanged(Consumer<RemoteSceneImpl> onSceneChanged) {
+		this.onSceneChanged = onSceneChanged;
+	}
+
+	/**
+	 * Returns the time the journal was started in milliseconds since the epoch.
+	 */
+	public long getStartMillis() {
+		return startMillis;
+	}
+
+	/**
+	 * Returns the duration of the journal in nanoseconds.
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	/**
+	 * Returns the current replay time in nanoseconds.
+	 */
+	public synchronized long getTime() {
+		return Math.max(time, 0);
+	}
+
+	public synchronized RemoteSceneImpl getScene() {
+		return scene;
+	}
+
+	/**
+	 * Moves the replay to the given time in nanoseconds since the start of the
+	 * journal. Seeking forward within the current keyframe interval applies the
+	 * records in between, otherwise the scene is rebuilt from the nearest
+	 * keyframe.
+	 */
+	public synchronized void seek(long target) {
+		target = Math.max(0, Math.min(target, duration));
+		int keyframe = Arrays.binarySearch(keyframeTimes, target);
+		if (keyframe < 0)
+			keyframe = -keyframe - 2;
+		else
+			// the last of several keyframes with the same time
+			while (keyframe + 1 < keyframeTimes.length && keyframeTimes[keyframe + 1] == target)
+				keyframe++;
+		if (scene != null && target >= time && keyframeTimes[keyframe] <= time) {
+			advance(target);
+			return;
+		}
+
+		part = keyframeParts[keyframe];
+		position = keyframeOffsets[keyframe];
+		state.read(record(parts[part].buffer, position));
+		position += 4 + parts[part].buffer.getInt(position);
+		applyRecords(target, false);
+		time = target;
+		rebuild();
+	}
+
+	/**
+	 * Applies the records up to the given time to the current scene.
+	 */
+	private void advance(long target) {
+		applyRecords(target, true);
+		time = target;
+	}
+
+	/**
+	 * Applies the records up to the given time, continuing with the next part
+	 * at the end of a part.
+	 */
+	private void applyRecords(long target, boolean toScene) {
+		while (true) {
+			Part current = parts[part];
+			if (position >= current.end) {
+				if (part + 1 >= parts.length)
+					return;
+				// the leading keyframe of the next part repeats the state
+				part++;
+				position = SceneJournal.HEADER_SIZE;
+				continue;
+			}
+			if (current.startNanos + current.buffer.getLong(position + 5) > target)
+				return;
+			int offset = position;
+			position += 4 + current.buffer.getInt(offset);
+			apply(current.buffer.get(offset + 4), record(current.buffer, offset), toScene);
+		}
+	}
+
+	/**
+	 * Returns the payload of the record at the given offset.
+	 */
+	private static ByteBuffer record(MappedByteBuffer buffer, int offset) {
+		ByteBuffer record = buffer.duplicate();
+		record.limit(offset + 4 + buffer.getInt(offset));
+		record.position(offset + SceneJournal.RECORD_HEADER_SIZE);
+		return record;
+	}
+
+	/**
+	 * Replaces the scene by a new scene showing the current state.
+	 */
+	private void rebuild() {
+		RemoteSceneImpl previous = scene;
+		try {
+			scene = new RemoteSceneImpl(sceneName, sceneGraphMode);
+		} catch (RemoteException e) {
+			RAPILogger.logException(this, e);
+			return;
+		}
+		frameIds.clear();
+		frameIds.put(0, 0);
+		transactionDepth = 0;
+		try {
+			scene.beginTransaction();
+			try {
+				for (Map.Entry<Integer, String> frame : state.getFrames().entrySet())
+					frameIds.put(frame.getKey(), scene.addFrame(frame.getValue()));
+				for (JournalState.Relation relation : state.getRelations())
+					addRelation(relation.from, relation.to, relation.pose);
+				for (JournalState.Mesh mesh : state.getMeshes().values())
+					addMesh(mesh);
+			} finally {
+				scene.commit();
+			}
+		} catch (RemoteException e) {
+			RAPILogger.logException(this, e);
+		}
+		if (previous != null)
+			dispose(previous);
+		if (onSceneChanged != null)
+			onSceneChanged.accept(scene);
+	}
+
+	/**
+	 * Applies a record to the state and, if requested, to the scene.
+	 */
+	private void apply(byte type, ByteBuffer record, boolean toScene) {
+		try {
+			switch (type) {
+			case TcpVisualizationProtocol.ADD_FRAME: {
+				int id = record.getInt();
+				String name = TcpVisualizationProtocol.getString(record);
+				state.addFrame(id, name);
+				if (toScene)
+					frameIds.put(id, scene.addFrame(name));
+				break;
+			}
+			case TcpVisualizationProtocol.REMOVE_FRAME: {
+				int id = record.getInt();
+				state.removeFrame(id);
+				Integer frame = frameIds.remove(id);
+				if (toScene && frame != null)
+					scene.removeFrame(frame);
+				break;
+			}
+			case TcpVisualizationProtocol.ADD_RELATION: {
+				int from = record.getInt(), to = record.getInt();
+				double[] pose = JournalState.getDoubles(record, 6);
+				state.addRelation(from, to, pose.clone());
+				if (toScene)
+					addRelation(from, to, pose);
+				break;
+			}
+			case TcpVisualizationProtocol.REMOVE_RELATION: {
+				int from = record.getInt(), to = record.getInt();
+				state.removeRelation(from, to);
+				if (toScene && frameIds.containsKey(from) && frameIds.containsKey(to))
+					scene.removeRelation(frameIds.get(from), frameIds.get(to));
+				break;
+			}
+			case TcpVisualizationProtocol.UPDATE_POSES:
+				updatePoses(record, toScene);
+				break;
+			case TcpVisualizationProtocol.ADD_MODEL:
+			case TcpVisualizationProtocol.ADD_BOX:
+			case TcpVisualizationProtocol.ADD_SPHERE:
+			case TcpVisualizationProtocol.ADD_CYLINDER:
+			case TcpVisualizationProtocol.ADD_CAPSULE: {
+				JournalState added = new JournalState();
+				added.read(record);
+				for (Map.Entry<Integer, JournalState.Mesh> mesh : added.getMeshes().entrySet()) {
+					state.addMesh(mesh.getKey(), mesh.getValue());
+					if (toScene)
+						addMesh(mesh.getValue());
+				}
+				break;
+			}
+			case TcpVisualizationProtocol.BEGIN_TRANSACTION:
+				if (toScene) {
+					transactionDepth++;
+					scene.beginTransaction();
+				}
+				break;
+			case TcpVisualizationProtocol.COMMIT:
+				// transactions opened before seeking were committed by the rebuild
+				if (toScene && transactionDepth > 0) {
+					transactionDepth--;
+					scene.commit();
+				}
+				break;
+			default:
+				// keyframes repeat the state built by the previous records
+				break;
+			}
+		} catch (RemoteException e) {
+			RAPILogger.logException(this, e);
+		}
+	}
+
+	private void updatePoses(ByteBuffer record, boolean toScene) throws RemoteException {
+		int count = record.getInt();
+		int[] from = new int[count], to = new int[count];
+		double[] poses = new double[6 * count];
+		double[] pose = new double[6];
+		int known = 0;
+		for (int i = 0; i < count; i++) {
+			int recordedFrom = record.getInt(), recordedTo = record.getInt();
+			for (int p = 0; p < 6; p++)
+				pose[p] = record.getFloat();
+			state.updatePose(recordedFrom, recordedTo, pose);
+			Integer sceneFrom = frameIds.get(recordedFrom), sceneTo = frameIds.get(recordedTo);
+			if (sceneFrom == null || sceneTo == null)
+				continue;
+			from[known] = sceneFrom;
+			to[known] = sceneTo;
+			System.arraycopy(pose, 0, poses, 6 * known, 6);
+			known++;
+		}
+		if (toScene && known > 0)
+			scene.updateTransformations(Arrays.copyOf(from, known), Arrays.copyOf(to, known),
+					Arrays.copyOf(poses, 6 * known));
+	}
+
+	private void addRelation(int from, int to, double[] p) throws RemoteException {
+		Integer sceneFrom = frameIds.get(from), sceneTo = frameIds.get(to);
+		if (sceneFrom != null && sceneTo != null)
+			scene.addRelation(sceneFrom, sceneTo, p[0], p[1], p[2], p[3], p[4], p[5]);
+	}
+
+	private void addMesh(JournalState.Mesh mesh) throws RemoteException {
+		Integer frame = frameIds.get(mesh.frame);
+		if (frame == null)
+			return;
+		double[] s = mesh.size, p = mesh.pose;
+		switch (mesh.type) {
+		case TcpVisualizationProtocol.ADD_MODEL:
+			scene.addModel(mesh.name, frame, mesh.modelName, mesh.contentHash, p);
+			break;
+		case TcpVisualizationProtocol.ADD_BOX:
+			scene.addBox(mesh.name, frame, s[0], s[1], s[2], p[0], p[1], p[2], p[3], p[4], p[5]);
+			break;
+		case TcpVisualizationProtocol.ADD_SPHERE:
+			scene.addSphere(mesh.name, frame, s[0], p[0], p[1], p[2], p[3], p[4], p[5]);
+			break;
+		case TcpVisualizationProtocol.ADD_CYLINDER:
+			scene.addCylinder(mesh.name, frame, s[0], s[1], p[0], p[1], p[2], p[3], p[4], p[5]);
+			break;
+		case TcpVisualizationProtocol.ADD_CAPSULE:
+			scene.addCapsule(mesh.name, frame, s[0], s[1], p[0], p[1], p[2], p[3], p[4], p[5]);
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Plays the journal from the current time with the given speed, until the
+	 * end or {@link #pause()}.
+	 * 
+	 * @param speed replay time per real time
+	 */
+	public synchronized void play(double speed) {
+		this.speed = speed;
+		if (player != null)
+			return;
+		if (scene == null || time >= duration)
+			seek(0);
+		player = new Thread(this::run, "Journal player " + sceneName);
+		player.setDaemon(true);
+		player.start();
+	}
+
+	public void pause() {
+		Thread player;
+		synchronized (this) {
+			player = this.player;
+			this.player = null;
+		}
+		if (player != null)
+			player.interrupt();
+	}
+
+	public synchronized boolean isPlaying() {
+		return player != null;
+	}
+
+	public double getSpeed() {
+		return speed;
+	}
+
+	/**
+	 * Changes the speed, also while playing.
+	 */
+	public void setSpeed(double speed) {
+		this.speed = speed;
+	}
+
+	private void run() {
+		long last = System.nanoTime();
+		while (true) {
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				return;
+			}
+			long now = System.nanoTime();
+			synchronized (this) {
+				if (player != Thread.currentThread())
+					return;
+				advance(Math.min(duration, time + (long) ((now - last) * speed)));
+				if (time >= duration) {
+					player = null;
+					return;
+				}
+			}
+			last = now;
+		}
+	}
+
+	/**
+	 * Deletes a replaced scene and unexports it, since replay scenes are not
+	 * registered with any factory.
+	 */
+	private void dispose(RemoteSceneImpl scene) {
+		scene.deleteScene();
+		try {
+			UnicastRemoteObject.unexportObject(scene, true);
+		} catch (NoSuchObjectException e) {
+			RAPILogger.logException(this, e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		pause();
+		synchronized (this) {
+			if (scene != null)
+				dispose(scene);
+			scene = null;
+		}
+		for (Part part : parts)
+			part.channel.close();
+	}
+
+}
@@ -0,0 +1,88 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. 
+ *
+ * Copyright 2010-2017 ISSE, University of Augsburg 
+ */
+
+package org.roboticsapi.feature.visualization.viewer.javafx.model;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.roboticsapi.feature.visualization.RAPILogger;
+
+import javafx.animation.AnimationTimer;
+
+/**
+ * Updates all registered scenes once per JavaFX pulse. The timer only runs
+ * while at least one scene is registered.
+ */
+public class SceneUpdateScheduler {
+
+	private static final SceneUpdateScheduler instance = new SceneUpdateScheduler();
+
+	public static SceneUpdateScheduler getInstance() {
+		return instance;
+	}
+
+	private final List<RemoteSceneImpl> scenes = new CopyOnWriteArrayList<>();
+
+	/**
+	 * only accessed from the JavaFX thread
+	 */
+	private AnimationTimer timer = null;
+	private boolean running = false;
+
+	private SceneUpdateScheduler() {
+	}
+
+	/**
+	 * Starts updating the given scene with every pulse.
+	 */
+	public void register(RemoteSceneImpl scene) {
+		if (scenes.add(scene))
+			RemoteSceneImpl.runOnFxThread(this::updateTimer);
+	}
+
+	/**
+	 * Stops updating the given scene.
+	 */
+	public void unregister(RemoteSceneImpl scene) {
+		if (scenes.remove(scene))
+			RemoteSceneImpl.runOnFxThread(this::updateTimer);
+	}
+
+	public int getSceneCount() {
+		return scenes.size();
+	}
+
+	private void updateTimer() {
+		if (timer == null) {
+			timer = new AnimationTimer() {
+				@Override
+				public void handle(long now) {
+					pulse();
+				}
+			};
+		}
+		if (scenes.isEmpty() && running) {
+			timer.stop();
+			running = false;
+		} else if (!scenes.isEmpty() && !running) {
+			timer.start();
+			running = true;
+		}
+	}
+
+	private void pulse() {
+		for (RemoteSceneImpl scene : scenes) {
+			try {
+				scene.pulse();
+			} catch (Exception e) {
+				RAPILogger.logException(this, e);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,230 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. 
+ *
+ * Copyright 2010-2017 ISSE, University of Augsburg 
+ */
+
+package org.roboticsapi.feature.visualization.viewer.javafx.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+import javafx.scene.shape.VertexFormat;
+import javafx.scene.transform.Affine;
+
+/**
+ * Models of a frame merged into one mesh view per material. The merged meshes
+ * hold the geometry in the coordinates of the scene's root group, so they stay
+ * valid only as long as the frame does not move. The original nodes are kept for
+ * restoring the models.
+ */
+class StaticBatch {
+
+	private final List<RapiMesh> models;
+	private final List<MeshView> views;
+
+	private StaticBatch(List<RapiMesh> models, List<MeshView> views) {
+		this.models = models;
+		this.views = views;
+	}
+
+	public List<RapiMesh> getModels() {
+		return models;
+	}
+
+	/**
+	 * Returns the merged mesh views replacing the nodes of the models.
+	 */
+	public List<MeshView> getViews() {
+		return views;
+	}
+
+	/**
+	 * Checks whether a model consists of plain triangle meshes only. Models
+	 * still being imported, with other shapes or with levels of detail are not
+	 * merged.
+	 */
+	public static boolean canMerge(RapiMesh model) {
+		return collectViews(Arrays.asList(model.getNodes()), new ArrayList<>());
+	}
+
+	private static boolean collectViews(Iterable<Node> nodes, List<MeshView> views) {
+		for (Node node : nodes) {
+			if (!node.isVisible())
+				continue;
+			if (node instanceof MeshView) {
+				MeshView view = (MeshView) node;
+				if (!(view.getMesh() instanceof TriangleMesh) || LodMesh.get(view) != null)
+					return false;
+				views.add(view);
+			} else if (node instanceof Group) {
+				if (!collectViews(((Group) node).getChildren(), views))
+					return false;
+			} else {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Merges the meshes of the given models, grouped by material, draw mode,
+	 * cull face and vertex format.
+	 * 
+	 * @param models models attached to the given root group, see
+	 *               {@link #canMerge(RapiMesh)}
+	 * @param root   the group the merged views are added to
+	 * @return the batch, or <code>null</code> if merging would not reduce the
+	 *         number of mesh views
+	 */
+	public static StaticBatch create(List<RapiMesh> models, Group root) {
+		Map<List<Object>, List<MeshView>> groups = new LinkedHashMap<>();
+		int count = 0;
+		for (RapiMesh model : models) {
+			List<MeshView> modelViews = new ArrayList<>();
+			collectViews(Arrays.asList(model.getNodes()), modelViews);
+			for (MeshView view : modelViews) {
+				List<Object> key = Arrays.asList(view.getMaterial(), view.getDrawMode(), view.getCullFace(),
+						((TriangleMesh) view.getMesh()).getVertexFormat());
+				groups.computeIfAbsent(key, k -> new ArrayList<>()).add(view);
+				count++;
+			}
+		}
+		if (groups.size() >= count)
+			return null;
+
+		List<MeshView> merged = new ArrayList<>();
+		for (List<MeshView> group : groups.values()) {
+			MeshView first = group.get(0);
+			MeshView view = new MeshView(merge(group, root));
+			view.setMaterial(first.getMaterial());
+			view.setDrawMode(first.getDrawMode());
+			view.setCullFace(first.getCullFace());
+			merged.add(view);
+		}
+		return new StaticBatch(new ArrayList<>(models), merged);
+	}
+
+	/**
+	 * Returns the transformation of a node into the coordinates of the given
+	 * ancestor.
+	 */
+	private static Affine getTransformTo(Node node, Parent ancestor) {
+		Affine result = new Affine();
+		for (Node current = node; current != null && current != ancestor; current = current.getParent())
+			result.prepend(current.getLocalToParentTransform());
+		return result;
+	}
+
+	private static TriangleMesh merge(List<MeshView> views, Group root) {
+		TriangleMesh first = (TriangleMesh) views.get(0).getMesh();
+		VertexFormat format = first.getVertexFormat();
+		int vertexSize = format.getVertexIndexSize();
+		int normalOffset = format == VertexFormat.POINT_NORMAL_TEXCOORD ? format.getNormalIndexOffset() : -1;
+
+		int pointCount = 0, normalCount = 0, texCoordCount = 0, faceCount = 0;
+		boolean smoothing = false;
+		for (MeshView view : views) {
+			TriangleMesh mesh = (TriangleMesh) view.getMesh();
+			pointCount += mesh.getPoints().size();
+			normalCount += mesh.getNormals().size();
+			texCoordCount += mesh.getTexCoords().size();
+			faceCount += mesh.getFaces().size();
+			smoothing |= mesh.getFaceSmoothingGroups().size() > 0;
+		}
+		float[] points = new float[pointCount];
+		float[] normals = new float[normalCount];
+		float[] texCoords = new float[texCoordCount];
+		int[] faces = new int[faceCount];
+		int[] smoothingGroups = new int[smoothing ? faceCount / (3 * vertexSize) : 0];
+
+		int p = 0, n = 0, t = 0, f = 0;
+		for (MeshView view : views) {
+			TriangleMesh mesh = (TriangleMesh) view.getMesh();
+			Affine m = getTransformTo(view, root);
+
+			float[] source = mesh.getPoints().toArray(null);
+			for (int i = 0; i < source.length; i += 3) {
+				double x = source[i], y = source[i + 1], z = source[i + 2];
+				points[p + i] = (float) (m.getMxx() * x + m.getMxy() * y + m.getMxz() * z + m.getTx());
+				points[p + i + 1] = (float) (m.getMyx() * x + m.getMyy() * y + m.getMyz() * z + m.getTy());
+				points[p + i + 2] = (float) (m.getMzx() * x + m.getMzy() * y + m.getMzz() * z + m.getTz());
+			}
+
+			// normals are transformed by the inverse transpose, which is the
+			// cofactor matrix up to a factor that is removed by normalizing
+			double sign = Math.signum(m.determinant());
+			double c00 = m.getMyy() * m.getMzz() - m.getMyz() * m.getMzy();
+			double c01 = m.getMyz() * m.getMzx() - m.getMyx() * m.getMzz();
+			double c02 = m.getMyx() * m.getMzy() - m.getMyy() * m.getMzx();
+			double c10 = m.getMxz() * m.getMzy() - m.getMxy() * m.getMzz();
+			double c11 = m.getMxx() * m.getMzz() - m.getMxz() * m.getMzx();
+			double c12 = m.getMxy() * m.getMzx() - m.getMxx() * m.getMzy();
+			double c20 = m.getMxy() * m.getMyz() - m.getMxz() * m.getMyy();
+			double c21 = m.getMxz() * m.getMyx() - m.getMxx() * m.getMyz();
+			double c22 = m.getMxx() * m.getMyy() - m.getMxy() * m.getMyx();
+			source = mesh.getNormals().toArray(null);
+			for (int i = 0; i < source.length; i += 3) {
+				double x = source[i], y = source[i + 1], z = source[i + 2];
+				double nx = c00 * x + c01 * y + c02 * z;
+				double ny = c10 * x + c11 * y + c12 * z;
+				double nz = c20 * x + c21 * y + c22 * z;
+				double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+				double scale = length > 0 ? sign / length : 0;
+				normals[n + i] = (float) (nx * scale);
+				normals[n + i + 1] = (float) (ny * scale);
+				normals[n + i + 2] = (float) (nz * scale);
+			}
+
+			mesh.getTexCoords().copyTo(0, texCoords, t, mesh.getTexCoords().size());
+
+			// mirroring transformations flip the winding, so the vertex order is
+			// restored by swapping the second and third vertex
+			int[] sourceFaces = mesh.getFaces().toArray(null);
+			int stride = 3 * vertexSize;
+			for (int i = 0; i < sourceFaces.length; i += stride) {
+				for (int v = 0; v < 3; v++) {
+					int vertex = sign < 0 && v > 0 ? 3 - v : v;
+					int from = i + vertex * vertexSize, to = f + i + v * vertexSize;
+					faces[to + format.getPointIndexOffset()] = sourceFaces[from + format.getPointIndexOffset()] + p / 3;
+					faces[to + format.getTexCoordIndexOffset()] = sourceFaces[from + format.getTexCoordIndexOffset()]
+							+ t / 2;
+					if (normalOffset >= 0)
+						faces[to + normalOffset] = sourceFaces[from + normalOffset] + n / 3;
+				}
+			}
+			if (smoothing) {
+				int faceIndex = f / stride;
+				if (mesh.getFaceSmoothingGroups().size() > 0)
+					mesh.getFaceSmoothingGroups().copyTo(0, smoothingGroups, faceIndex,
+							mesh.getFaceSmoothingGroups().size());
+				else
+					Arrays.fill(smoothingGroups, faceIndex, faceIndex + sourceFaces.length / stride, 1);
+			}
+
+			p += mesh.getPoints().size();
+			n += mesh.getNormals().size();
+			t += mesh.getTexCoords().size();
+			f += sourceFaces.length;
+		}
+
+		TriangleMesh result = new TriangleMesh(format);
+		result.getPoints().setAll(points);
+		result.getNormals().setAll(normals);
+		result.getTexCoords().setAll(texCoords);
+		result.getFaces().setAll(faces);
+		if (smoothing)
+			result.getFaceSmoothingGroups().setAll(smoothingGroups);
+		return result;
+	}
+
+}
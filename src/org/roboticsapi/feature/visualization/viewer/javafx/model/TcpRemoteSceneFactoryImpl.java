@@ -0,0 +1,414 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. 
+ *
+ * Copyright 2010-2017 ISSE, University of Augsburg 
+ */
+
+package org.roboticsapi.feature.visualization.viewer.javafx.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.roboticsapi.feature.visualization.RAPILogger;
+import org.roboticsapi.feature.visualization.SceneTemplate;
+import org.roboticsapi.feature.visualization.tcp.TcpChannel;
+import org.roboticsapi.feature.visualization.tcp.TcpVisualizationProtocol;
+
+/**
+ * Counterpart of {@link RmiRemoteSceneFactoryImpl} for the binary TCP
+ * visualization protocol. Connects to a Robotics API application and executes
+ * the received scene operations on {@link RemoteSceneImpl}s.
+ * 
+ * @see TcpVisualizationProtocol
+ */
+public abstract class TcpRemoteSceneFactoryImpl implements Closeable {
+
+	private final TcpChannel channel;
+	private final Thread thread;
+	private boolean alive = true;
+
+	private final Map<Integer, SceneSession> scenes = new HashMap<>();
+	private int nextSceneId = 0;
+
+	/**
+	 * error of an operation without reply, sent as reply to the next operation
+	 * with reply, or <code>null</code>
+	 */
+	private String deferredError = null;
+
+	/**
+	 * A scene created over the connection and its relation slots.
+	 */
+	private static class SceneSession {
+		private final RemoteSceneImpl scene;
+		private int[] slotFrom = new int[0];
+		private int[] slotTo = new int[0];
+
+		public SceneSession(RemoteSceneImpl scene) {
+			this.scene = scene;
+		}
+
+		public void assignSlot(int slot, int from, int to) {
+			if (slot >= slotFrom.length) {
+				int oldLength = slotFrom.length;
+				int newLength = Math.max(slot + 1, 2 * oldLength);
+				slotFrom = Arrays.copyOf(slotFrom, newLength);
+				slotTo = Arrays.copyOf(slotTo, newLength);
+				Arrays.fill(slotFrom, oldLength, newLength, -1);
+			}
+			slotFrom[slot] = from;
+			slotTo[slot] = to;
+		}
+
+		public boolean isAssigned(int slot) {
+			return slot >= 0 && slot < slotFrom.length && slotFrom[slot] != -1;
+		}
+	}
+
+	private final RemoteSceneImpl.SceneGraphMode sceneGraphMode;
+
+	protected TcpRemoteSceneFactoryImpl(String host, int port) throws IOException {
+		this(host, port, RemoteSceneImpl.SceneGraphMode.FLAT);
+	}
+
+	protected TcpRemoteSceneFactoryImpl(String host, int port, RemoteSceneImpl.SceneGraphMode sceneGraphMode)
+			throws IOException {
+		this.sceneGraphMode = sceneGraphMode;
+		channel = new TcpChannel(SocketChannel.open(new InetSocketAddress(host, port)));
+		thread = new Thread(this::run);
+		thread.setDaemon(true);
+		thread.setName("Robotics API tcp visualization [" + host + ":" + port + "]");
+		thread.start();
+	}
+
+	protected abstract void onSceneAdded(RemoteSceneImpl scene);
+
+	protected abstract void onSceneRemoved(RemoteSceneImpl scene);
+
+	private void run() {
+		try {
+			while (alive) {
+				ByteBuffer message = channel.receive();
+				byte op = message.get();
+				int sceneId = message.getInt();
+				boolean expectsReply = TcpVisualizationProtocol.expectsReply(op);
+				if (expectsReply && deferredError != null) {
+					// the operation is not executed, since it may depend on the failed one
+					replyError("Earlier operation failed: " + deferredError);
+					deferredError = null;
+					continue;
+				}
+				try {
+					handle(op, sceneId, message);
+				} catch (Exception e) {
+					if (expectsReply) {
+						replyError(e.toString());
+					} else {
+						RAPILogger.logException(this, e);
+						if (deferredError == null)
+							deferredError = e.toString();
+					}
+				}
+			}
+		} catch (IOException e) {
+			if (alive)
+				RAPILogger.getLogger().fine("Tcp visualization connection closed: " + e);
+		} finally {
+			if (alive) {
+				alive = false;
+				for (SceneSession session : new ArrayList<>(scenes.values())) {
+					session.scene.deleteScene();
+					onSceneRemoved(session.scene);
+				}
+				scenes.clear();
+			}
+			try {
+				channel.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	private SceneSession getSession(int sceneId) {
+		SceneSession session = scenes.get(sceneId);
+		if (session == null)
+			throw new IllegalArgumentException("Unknown scene " + sceneId);
+		return session;
+	}
+
+	private void replyError(String text) throws IOException {
+		ByteBuffer reply = channel.beginReply(TcpVisualizationProtocol.STATUS_ERROR,
+				TcpVisualizationProtocol.sizeOf(text));
+		TcpVisualizationProtocol.putString(reply, text);
+		channel.send();
+	}
+
+	private ByteBuffer reply(int payloadSize) {
+		return channel.beginReply(TcpVisualizationProtocol.STATUS_OK, payloadSize);
+	}
+
+	private void handle(byte op, int sceneId, ByteBuffer message) throws Exception {
+		switch (op) {
+		case TcpVisualizationProtocol.CREATE_SCENE: {
+			String name = TcpVisualizationProtocol.getString(message);
+			RemoteSceneImpl scene = new RemoteSceneImpl(name, sceneGraphMode);
+			int id = ++nextSceneId;
+			scenes.put(id, new SceneSession(scene));
+			onSceneAdded(scene);
+			reply(4).putInt(id);
+			break;
+		}
+		case TcpVisualizationProtocol.DELETE_SCENE: {
+			SceneSession session = scenes.remove(sceneId);
+			if (session != null) {
+				session.scene.deleteScene();
+				onSceneRemoved(session.scene);
+			}
+			reply(1).put((byte) (session != null ? 1 : 0));
+			break;
+		}
+		case TcpVisualizationProtocol.GET_NAME: {
+			String name = getSession(sceneId).scene.getName();
+			TcpVisualizationProtocol.putString(reply(TcpVisualizationProtocol.sizeOf(name)), name);
+			break;
+		}
+		case TcpVisualizationProtocol.ADD_MODEL: {
+			RemoteSceneImpl scene = getSession(sceneId).scene;
+			String name = TcpVisualizationProtocol.getString(message);
+			int frame = message.getInt();
+			String modelName = TcpVisualizationProtocol.getString(message);
+			double[] p = getPose(message);
+			reply(4).putInt(scene.addModel(name, frame, modelName, p[0], p[1], p[2], p[3], p[4], p[5]));
+			break;
+		}
+		case TcpVisualizationProtocol.ADD_BOX: {
+			RemoteSceneImpl scene = getSession(sceneId).scene;
+			String name = TcpVisualizationProtocol.getString(message);
+			int frame = message.getInt();
+			double sx = message.getDouble(), sy = message.getDouble(), sz = message.getDouble();
+			double[] p = getPose(message);
+			reply(4).putInt(scene.addBox(name, frame, sx, sy, sz, p[0], p[1], p[2], p[3], p[4], p[5]));
+			break;
+		}
+		case TcpVisualizationProtocol.ADD_SPHERE: {
+			RemoteSceneImpl scene = getSession(sceneId).scene;
+			String name = TcpVisualizationProtocol.getString(message);
+			int frame = message.getInt();
+			double radius = message.getDouble();
+			double[] p = getPose(message);
+			reply(4).putInt(scene.addSphere(name, frame, radius, p[0], p[1], p[2], p[3], p[4], p[5]));
+			break;
+		}
+		case TcpVisualizationProtocol.ADD_CYLINDER: {
+			RemoteSceneImpl scene = getSession(sceneId).scene;
+			String name = TcpVisualizationProtocol.getString(message);
+			int frame = message.getInt();
+			double radius = message.getDouble(), height = message.getDouble();
+			double[] p = getPose(message);
+			reply(4).putInt(scene.addCylinder(name, frame, radius, height, p[0], p[1], p[2], p[3], p[4], p[5]));
+			break;
+		}
+		case TcpVisualizationProtocol.ADD_CAPSULE: {
+			RemoteSceneImpl scene = getSession(sceneId).scene;
+			String name = TcpVisualizationProtocol.getString(message);
+			int frame = message.getInt();
+			double radius = message.getDouble(), height = message.getDouble();
+			double[] p = getPose(message);
+			reply(4).putInt(scene.addCapsule(name, frame, radius, height, p[0], p[1], p[2], p[3], p[4], p[5]));
+			break;
+		}
+		case TcpVisualizationProtocol.HAS_MODEL: {
+			boolean result = getSession(sceneId).scene.hasModel(TcpVisualizationProtocol.getString(message));
+			reply(1).put((byte) (result ? 1 : 0));
+			break;
+		}
+		case TcpVisualizationProtocol.GET_MISSING_MODELS: {
+			RemoteSceneImpl scene = getSession(sceneId).scene;
+			Map<String, String> models = new HashMap<>();
+			for (int i = message.getInt(); i > 0; i--)
+				models.put(TcpVisualizationProtocol.getString(message), TcpVisualizationProtocol.getString(message));
+			String[] missing = scene.getMissingModels(models, message.get() != 0);
+			int size = 4;
+			for (String name : missing)
+				size += TcpVisualizationProtocol.sizeOf(name);
+			ByteBuffer reply = reply(size);
+			reply.putInt(missing.length);
+			for (String name : missing)
+				TcpVisualizationProtocol.putString(reply, name);
+			break;
+		}
+		case TcpVisualizationProtocol.UPLOAD_MODEL: {
+			RemoteSceneImpl scene = getSession(sceneId).scene;
+			String modelName = TcpVisualizationProtocol.getString(message);
+			byte[] modelData = TcpVisualizationProtocol.getBytes(message);
+			Map<String, byte[]> auxFiles = new HashMap<>();
+			for (int i = message.getInt(); i > 0; i--)
+				auxFiles.put(TcpVisualizationProtocol.getString(message), TcpVisualizationProtocol.getBytes(message));
+			scene.uploadModel(modelName, modelData, auxFiles);
+			reply(0);
+			break;
+		}
+		case TcpVisualizationProtocol.BEGIN_MODEL_UPLOAD: {
+			RemoteSceneImpl scene = getSession(sceneId).scene;
+			String uploadId = TcpVisualizationProtocol.getString(message);
+			scene.beginModelUpload(uploadId, TcpVisualizationProtocol.getString(message));
+			reply(0);
+			break;
+		}
+		case TcpVisualizationProtocol.APPEND_MODEL_CHUNK: {
+			RemoteSceneImpl scene = getSession(sceneId).scene;
+			String uploadId = TcpVisualizationProtocol.getString(message);
+			String fileName = TcpVisualizationProtocol.getString(message);
+			long offset = message.getLong();
+			byte[] chunk = TcpVisualizationProtocol.getBytes(message);
+			reply(8).putLong(scene.appendModelChunk(uploadId, fileName, offset, chunk));
+			break;
+		}
+		case TcpVisualizationProtocol.FINISH_MODEL_UPLOAD: {
+			RemoteSceneImpl scene = getSession(sceneId).scene;
+			String uploadId = TcpVisualizationProtocol.getString(message);
+			scene.finishModelUpload(uploadId, TcpVisualizationProtocol.getString(message));
+			reply(0);
+			break;
+		}
+		case TcpVisualizationProtocol.GET_ROOT_FRAME:
+			reply(4).putInt(getSession(sceneId).scene.getRootFrame());
+			break;
+		case TcpVisualizationProtocol.ADD_FRAME:
+			reply(4).putInt(getSession(sceneId).scene.addFrame(TcpVisualizationProtocol.getString(message)));
+			break;
+		case TcpVisualizationProtocol.REMOVE_FRAME:
+			getSession(sceneId).scene.removeFrame(message.getInt());
+			break;
+		case TcpVisualizationProtocol.ADD_RELATION: {
+			SceneSession session = getSession(sceneId);
+			int slot = message.getInt(), from = message.getInt(), to = message.getInt();
+			double[] p = getPose(message);
+			session.assignSlot(slot, from, to);
+			session.scene.addRelation(from, to, p[0], p[1], p[2], p[3], p[4], p[5]);
+			break;
+		}
+		case TcpVisualizationProtocol.REMOVE_RELATION:
+			getSession(sceneId).scene.removeRelation(message.getInt(), message.getInt());
+			break;
+		case TcpVisualizationProtocol.REGISTER_TEMPLATE: {
+			RemoteSceneImpl scene = getSession(sceneId).scene;
+			reply(4).putInt(scene.registerTemplate(TcpVisualizationProtocol.getTemplate(message)));
+			break;
+		}
+		case TcpVisualizationProtocol.INSTANTIATE_TEMPLATE: {
+			SceneSession session = getSession(sceneId);
+			int templateId = message.getInt(), parentFrame = message.getInt(), firstSlot = message.getInt();
+			String[] names = new String[message.getInt()];
+			for (int i = 0; i < names.length; i++)
+				names[i] = TcpVisualizationProtocol.getString(message);
+			int[] frameIds = session.scene.instantiateTemplate(templateId, names, parentFrame);
+			SceneTemplate template = session.scene.getTemplate(templateId);
+			int slot = firstSlot;
+			for (int i = 0; i < names.length; i++) {
+				for (int r = 0; r < template.getRelationCount(); r++) {
+					int from = template.getFrameId(frameIds, i, template.getRelationFrom(r), parentFrame);
+					int to = template.getFrameId(frameIds, i, template.getRelationTo(r), parentFrame);
+					session.assignSlot(slot++, from, to);
+				}
+			}
+			ByteBuffer reply = reply(4 + 4 * frameIds.length).putInt(frameIds.length);
+			for (int id : frameIds)
+				reply.putInt(id);
+			break;
+		}
+		case TcpVisualizationProtocol.UPDATE_POSES:
+			updatePoses(getSession(sceneId), message);
+			break;
+		case TcpVisualizationProtocol.BEGIN_TRANSACTION:
+			getSession(sceneId).scene.beginTransaction();
+			break;
+		case TcpVisualizationProtocol.COMMIT:
+			getSession(sceneId).scene.commit();
+			break;
+		case TcpVisualizationProtocol.IS_VALID: {
+			SceneSession session = scenes.get(sceneId);
+			reply(1).put((byte) (session != null && session.scene.isValid() ? 1 : 0));
+			break;
+		}
+		case TcpVisualizationProtocol.HIGHLIGHT:
+			getSession(sceneId).scene.highlight();
+			break;
+		case TcpVisualizationProtocol.GET_TRANSPARENCY:
+			reply(8).putDouble(getSession(sceneId).scene.getTransparency(message.getInt()));
+			break;
+		case TcpVisualizationProtocol.GET_COLOR: {
+			double[] color = getSession(sceneId).scene.getColor(message.getInt());
+			if (color == null) {
+				reply(4).putInt(-1);
+			} else {
+				ByteBuffer reply = reply(4 + 8 * color.length).putInt(color.length);
+				for (double value : color)
+					reply.putDouble(value);
+			}
+			break;
+		}
+		case TcpVisualizationProtocol.SET_TRANSPARENCY:
+			getSession(sceneId).scene.setTransparency(message.getInt(), message.getDouble());
+			break;
+		case TcpVisualizationProtocol.SET_COLOR:
+			getSession(sceneId).scene.setColor(message.getInt(), message.getDouble(), message.getDouble(),
+					message.getDouble());
+			break;
+		case TcpVisualizationProtocol.SET_SCALE:
+			getSession(sceneId).scene.setScale(message.getInt(), message.getDouble(), message.getDouble(),
+					message.getDouble());
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown operation " + op);
+		}
+		if (TcpVisualizationProtocol.expectsReply(op))
+			channel.send();
+	}
+
+	private static double[] getPose(ByteBuffer message) {
+		double[] pose = new double[6];
+		for (int i = 0; i < 6; i++)
+			pose[i] = message.getDouble();
+		return pose;
+	}
+
+	private static void updatePoses(SceneSession session, ByteBuffer message) throws Exception {
+		int count = message.getInt();
+		int[] from = new int[count];
+		int[] to = new int[count];
+		double[] poses = new double[6 * count];
+		for (int i = 0; i < count; i++) {
+			int slot = message.getInt();
+			if (!session.isAssigned(slot))
+				throw new IllegalArgumentException("Unknown relation slot " + slot);
+			from[i] = session.slotFrom[slot];
+			to[i] = session.slotTo[slot];
+			for (int p = 6 * i; p < 6 * i + 6; p++)
+				poses[p] = message.getFloat();
+		}
+		session.scene.updateTransformations(from, to, poses);
+	}
+
+	public boolean isConnected() {
+		return alive;
+	}
+
+	/**
+	 * Closes the connection without notifying about removed scenes.
+	 */
+	@Override
+	public void close() throws IOException {
+		alive = false;
+		channel.close();
+	}
+
+}
@@ -28,6 +28,8 @@ public interface ConnectionOverviewInterface {
 
 	public void setSceneThumbnail(SceneID sceneId, Image thumbnail) throws UnknownIdentifierException;
 
+	public boolean isSceneThumbnailVisible(SceneID sceneId) throws UnknownIdentifierException;
+
 	public void setSelection(SceneID[] sceneIds) throws UnknownIdentifierException;
 
 	public void removeServer(HostID hostId) throws UnknownIdentifierException;
@@ -384,6 +384,11 @@ public class ConnectionOverviewPane extends BorderPane implements ConnectionOver
 					return;
 				}
 
+				// captures reuse their image, so the view shows it already
+				if (imagePane.getCenter() instanceof ImageView
+						&& ((ImageView) imagePane.getCenter()).getImage() == thumbnail)
+					return;
+
 				final ImageView imageView = new ImageView(thumbnail);
 				imageView.setPreserveRatio(true);
 				imageView.setSmooth(true);
@@ -480,6 +485,23 @@ public class ConnectionOverviewPane extends BorderPane implements ConnectionOver
 		getSceneTab(sceneId).setThumbnail(thumbnail);
 	}
 
+	/**
+	 * Checks whether the thumbnail of the scene is on screen, i.e. its host and
+	 * application are expanded and it is scrolled into view.
+	 */
+	@Override
+	public boolean isSceneThumbnailVisible(SceneID sceneId) throws UnknownIdentifierException {
+		SceneTab sceneTab = getSceneTab(sceneId);
+		if (getScene() == null || getScene().getWindow() == null || !getScene().getWindow().isShowing())
+			return false;
+		for (Node node = sceneTab; node != null; node = node.getParent()) {
+			if (!node.isVisible() || node instanceof TitledPane && !((TitledPane) node).isExpanded())
+				return false;
+		}
+		Bounds viewport = scrollPane.localToScene(scrollPane.getLayoutBounds());
+		return sceneTab.localToScene(sceneTab.getLayoutBounds()).intersects(viewport);
+	}
+
 	private void checkSelection() {
 		setSelection(currentSelection);
 	}
@@ -0,0 +1,108 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. 
+ *
+ * Copyright 2010-2017 ISSE, University of Augsburg 
+ */
+
+package org.roboticsapi.feature.visualization.viewer.javafx.nodes;
+
+import javafx.geometry.Bounds;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Node;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.transform.Scale;
+
+/**
+ * Renders nodes into an image of a fixed size, reused for every capture. The
+ * node is scaled to the target size while rendering, so a thumbnail never
+ * renders a full size snapshot. JavaFX reads the rendered pixels back into a
+ * new buffer with every snapshot; {@link #getPixels(int[])} copies them once
+ * more into a buffer of the caller.
+ * 
+ * Each consumer keeps its own capture, since the image changes with every
+ * capture. Captures must be taken on the JavaFX thread.
+ */
+public class FrameCapture {
+
+	private final int width, height;
+	private final WritableImage image;
+	private final SnapshotParameters parameters = new SnapshotParameters();
+	private final Scale scale = new Scale();
+
+	/**
+	 * Creates a capture of the given size.
+	 */
+	public FrameCapture(int width, int height) {
+		this(width, height, Color.WHITE);
+	}
+
+	/**
+	 * Creates a capture of the given size.
+	 * 
+	 * @param fill the background of areas not covered by the node
+	 */
+	public FrameCapture(int width, int height, Paint fill) {
+		this.width = width;
+		this.height = height;
+		image = new WritableImage(width, height);
+		parameters.setFill(fill);
+		parameters.setTransform(scale);
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns the image holding the last capture.
+	 */
+	public WritableImage getImage() {
+		return image;
+	}
+
+	/**
+	 * Copies the pixels of the last capture as ARGB, row by row, into the given
+	 * array of at least width * height elements. Must be called on the JavaFX
+	 * thread.
+	 */
+	public void getPixels(int[] pixels) {
+		image.getPixelReader().getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+	}
+
+	/**
+	 * Renders the node into the image, scaled to fit and centered.
+	 * 
+	 * @return the image
+	 */
+	public WritableImage capture(Node node) {
+		Bounds bounds = node.getBoundsInParent();
+		double factor = Math.min(width / Math.max(bounds.getWidth(), 1), height / Math.max(bounds.getHeight(), 1));
+		return capture(node, factor);
+	}
+
+	/**
+	 * Renders the node into the image with the given scale, centered.
+	 * Everything outside of the image is clipped.
+	 * 
+	 * @return the image
+	 */
+	public WritableImage capture(Node node, double factor) {
+		Bounds bounds = node.getBoundsInParent();
+		scale.setX(factor);
+		scale.setY(factor);
+		double x = (bounds.getMinX() + bounds.getWidth() / 2) * factor - width / 2.0;
+		double y = (bounds.getMinY() + bounds.getHeight() / 2) * factor - height / 2.0;
+		parameters.setViewport(new Rectangle2D(x, y, width, height));
+		return node.snapshot(parameters, image);
+	}
+
+}
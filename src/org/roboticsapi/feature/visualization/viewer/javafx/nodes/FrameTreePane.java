@@ -8,7 +8,10 @@
 package org.roboticsapi.feature.visualization.viewer.javafx.nodes;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.roboticsapi.feature.visualization.viewer.javafx.model.RapiFrame;
 import org.roboticsapi.feature.visualization.viewer.javafx.model.RemoteSceneImpl.FrameListener;
@@ -28,6 +31,11 @@ public class FrameTreePane extends TreeView<RapiFrame> implements FrameListener
 	private TreeItem<RapiFrame> root = new TreeItem<>(null);
 	private List<FrameSelectionListener> listeners = new ArrayList<>();
 
+	/**
+	 * frames whose tree items are updated on the next JavaFX pulse
+	 */
+	private final Set<RapiFrame> pendingUpdates = new LinkedHashSet<>();
+
 	public void addSelectionListener(FrameSelectionListener listener) {
 		listeners.add(listener);
 	}
@@ -56,13 +64,37 @@ public class FrameTreePane extends TreeView<RapiFrame> implements FrameListener
 	}
 
 	public void updateFrame(RapiFrame frame) {
+		synchronized (pendingUpdates) {
+			// an update is already scheduled if the set was not empty
+			if (!pendingUpdates.isEmpty()) {
+				pendingUpdates.add(frame);
+				return;
+			}
+			pendingUpdates.add(frame);
+		}
 		Platform.runLater(() -> {
-			removeTreeItemForFrame(frame);
-			if (frame.getParentFrame() != null || frame.isRoot())
-				addTreeItemForFrame(frame);
+			List<RapiFrame> updated;
+			synchronized (pendingUpdates) {
+				updated = new ArrayList<>(pendingUpdates);
+				pendingUpdates.clear();
+			}
+			// re-adding a parent drops the items below it, so handle parents first
+			updated.sort(Comparator.comparingInt(FrameTreePane::getDepth));
+			for (RapiFrame f : updated) {
+				removeTreeItemForFrame(f);
+				if (f.getParentFrame() != null || f.isRoot())
+					addTreeItemForFrame(f);
+			}
 		});
 	}
 
+	private static int getDepth(RapiFrame frame) {
+		int depth = 0;
+		for (RapiFrame f = frame.getParentFrame(); f != null; f = f.getParentFrame())
+			depth++;
+		return depth;
+	}
+
 	private TreeItem<RapiFrame> addTreeItemForFrame(RapiFrame frame) {
 		TreeItem<RapiFrame> existing = findItem(frame);
 		if (existing != null)
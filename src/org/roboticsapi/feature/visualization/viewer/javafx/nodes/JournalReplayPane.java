@@ -0,0 +1,117 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. 
+ *
+ * Copyright 2010-2017 ISSE, University of Augsburg 
+ */
+
+package org.roboticsapi.feature.visualization.viewer.javafx.nodes;
+
+import java.io.IOException;
+
+import org.roboticsapi.feature.visualization.RAPILogger;
+import org.roboticsapi.feature.visualization.viewer.javafx.Configuration;
+import org.roboticsapi.feature.visualization.viewer.javafx.model.SceneJournalPlayer;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Group;
+import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.Slider;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+
+/**
+ * Shows a scene replayed from a journal, with controls for playing and
+ * seeking.
+ */
+@SuppressWarnings("restriction")
+public class JournalReplayPane extends BorderPane {
+
+	private final SceneJournalPlayer player;
+	private final VisualizationPane content;
+	private final Button play = new Button("Play");
+	private final Slider position = new Slider();
+	private final Label time = new Label();
+	private final AnimationTimer timer;
+	private boolean updating = false;
+
+	public JournalReplayPane(SceneJournalPlayer player, Configuration configuration) {
+		this.player = player;
+		content = new VisualizationPane(new Group(), configuration);
+		setCenter(content);
+
+		player.setOnSceneChanged(scene -> Platform.runLater(() -> {
+			content.setVisualizationNode(scene.getJavaFXScene());
+			scene.setLodCamera(content.getCamera(), content::getHeight);
+		}));
+
+		play.setOnAction(e -> {
+			if (player.isPlaying())
+				player.pause();
+			else
+				player.play(player.getSpeed());
+		});
+
+		ComboBox<Double> speed = new ComboBox<>();
+		speed.getItems().addAll(0.25, 0.5, 1.0, 2.0, 5.0, 10.0);
+		speed.setValue(1.0);
+		speed.setOnAction(e -> player.setSpeed(speed.getValue()));
+
+		position.setMax(player.getDuration() / 1e9);
+		HBox.setHgrow(position, Priority.ALWAYS);
+		// seeking backwards rebuilds the scene, so dragging only seeks once released
+		position.valueProperty().addListener((o, oldValue, newValue) -> {
+			if (!updating && !position.isValueChanging())
+				player.seek((long) (newValue.doubleValue() * 1e9));
+		});
+		position.valueChangingProperty().addListener((o, wasChanging, changing) -> {
+			if (!changing)
+				player.seek((long) (position.getValue() * 1e9));
+		});
+
+		HBox controls = new HBox(5, play, speed, position, time);
+		controls.setAlignment(Pos.CENTER_LEFT);
+		controls.setPadding(new Insets(5));
+		setBottom(controls);
+
+		timer = new AnimationTimer() {
+			@Override
+			public void handle(long now) {
+				updateControls();
+			}
+		};
+		timer.start();
+		player.seek(0);
+	}
+
+	private void updateControls() {
+		play.setText(player.isPlaying() ? "Pause" : "Play");
+		double seconds = player.getTime() / 1e9;
+		if (!position.isValueChanging()) {
+			updating = true;
+			position.setValue(seconds);
+			updating = false;
+		}
+		time.setText(String.format("%.1f / %.1f s", seconds, player.getDuration() / 1e9));
+	}
+
+	/**
+	 * Stops the replay and closes the journal.
+	 */
+	public void dispose() {
+		timer.stop();
+		content.dispose();
+		try {
+			player.close();
+		} catch (IOException e) {
+			RAPILogger.logException(getClass(), e);
+		}
+	}
+
+}
@@ -0,0 +1,188 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. 
+ *
+ * Copyright 2010-2017 ISSE, University of Augsburg 
+ */
+
+package org.roboticsapi.feature.visualization.viewer.javafx.nodes;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes JPEG frames into a Motion JPEG AVI file (RIFF AVI 1.0 with an idx1
+ * index). Frames are appended as they come; the headers are completed when the
+ * file is closed. Empty frames repeat the previous frame, which keeps the
+ * playback time of dropped frames.
+ */
+class MjpegAviWriter implements Closeable {
+
+	/**
+	 * size limit of the file, staying below the 2 GiB supported by most AVI 1.0
+	 * readers
+	 */
+	public static final long MAX_SIZE = 2_000_000_000L;
+
+	private static final int AVIF_HASINDEX = 0x10;
+	private static final int AVIIF_KEYFRAME = 0x10;
+
+	/**
+	 * offsets of the RIFF and movi list sizes and of the frame counts
+	 */
+	private static final int RIFF_SIZE = 4;
+	private static final int AVIH_TOTAL_FRAMES = 48;
+	private static final int AVIH_BUFFER_SIZE = 60;
+	private static final int STRH_LENGTH = 140;
+	private static final int STRH_BUFFER_SIZE = 144;
+	private static final int MOVI_SIZE = 216;
+	private static final int MOVI_START = 224;
+
+	private final FileChannel channel;
+	private final int width, height;
+	private ByteBuffer index = ByteBuffer.allocate(16 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+	private final ByteBuffer chunkHeader = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+	private long position;
+	private int frames = 0;
+	private int largestFrame = 0;
+
+	/**
+	 * Creates the file and writes the headers.
+	 * 
+	 * @param fps frames per second of the stream
+	 */
+	public MjpegAviWriter(Path file, int width, int height, int fps) throws IOException {
+		this.width = width;
+		this.height = height;
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE);
+
+		ByteBuffer header = ByteBuffer.allocate(MOVI_START).order(ByteOrder.LITTLE_ENDIAN);
+		putFourCC(header, "RIFF").putInt(0);
+		putFourCC(header, "AVI ");
+		putFourCC(header, "LIST").putInt(4 + 64 + 12 + 64 + 48);
+		putFourCC(header, "hdrl");
+
+		// main header
+		putFourCC(header, "avih").putInt(56);
+		header.putInt(1000000 / fps).putInt(0).putInt(0).putInt(AVIF_HASINDEX);
+		header.putInt(0).putInt(0).putInt(1).putInt(0);
+		header.putInt(width).putInt(height).putInt(0).putInt(0).putInt(0).putInt(0);
+
+		// stream header
+		putFourCC(header, "LIST").putInt(4 + 64 + 48);
+		putFourCC(header, "strl");
+		putFourCC(header, "strh").putInt(56);
+		putFourCC(header, "vids");
+		putFourCC(header, "MJPG");
+		header.putInt(0).putShort((short) 0).putShort((short) 0).putInt(0);
+		header.putInt(1).putInt(fps).putInt(0).putInt(0).putInt(0).putInt(-1).putInt(0);
+		header.putShort((short) 0).putShort((short) 0).putShort((short) width).putShort((short) height);
+
+		// stream format
+		putFourCC(header, "strf").putInt(40);
+		header.putInt(40).putInt(width).putInt(height).putShort((short) 1).putShort((short) 24);
+		putFourCC(header, "MJPG");
+		header.putInt(width * height * 3).putInt(0).putInt(0).putInt(0).putInt(0);
+
+		putFourCC(header, "LIST").putInt(4);
+		putFourCC(header, "movi");
+		header.flip();
+		while (header.hasRemaining())
+			channel.write(header);
+		position = MOVI_START;
+	}
+
+	private static ByteBuffer putFourCC(ByteBuffer buffer, String fourCC) {
+		return buffer.put(fourCC.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getFrameCount() {
+		return frames;
+	}
+
+	/**
+	 * Returns the size of the file, not including the index written on close.
+	 */
+	public long getSize() {
+		return position + index.position();
+	}
+
+	/**
+	 * Appends a frame.
+	 * 
+	 * @param jpeg the JPEG data, or <code>null</code> to repeat the previous frame
+	 */
+	public void writeFrame(byte[] jpeg) throws IOException {
+		int length = jpeg == null ? 0 : jpeg.length;
+		if (index.remaining() < 16) {
+			ByteBuffer larger = ByteBuffer.allocate(2 * index.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+			index.flip();
+			index = larger.put(index);
+		}
+		putFourCC(index, "00dc").putInt(length > 0 ? AVIIF_KEYFRAME : 0).putInt((int) (position - MOVI_START + 4))
+				.putInt(length);
+
+		chunkHeader.clear();
+		putFourCC(chunkHeader, "00dc").putInt(length).flip();
+		while (chunkHeader.hasRemaining())
+			channel.write(chunkHeader);
+		if (length > 0) {
+			ByteBuffer data = ByteBuffer.wrap(jpeg);
+			while (data.hasRemaining())
+				channel.write(data);
+			// chunks are padded to an even size
+			if ((length & 1) != 0)
+				channel.write(ByteBuffer.allocate(1));
+		}
+		position += 8 + length + (length & 1);
+		frames++;
+		largestFrame = Math.max(largestFrame, length);
+	}
+
+	/**
+	 * Writes the index and completes the headers.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			ByteBuffer idx = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+			putFourCC(idx, "idx1").putInt(index.position()).flip();
+			channel.write(idx, position);
+			index.flip();
+			long offset = position + 8;
+			while (index.hasRemaining())
+				offset += channel.write(index, offset);
+
+			patch(RIFF_SIZE, (int) (offset - 8));
+			patch(MOVI_SIZE, (int) (position - MOVI_SIZE - 4));
+			patch(AVIH_TOTAL_FRAMES, frames);
+			patch(AVIH_BUFFER_SIZE, largestFrame + 8);
+			patch(STRH_LENGTH, frames);
+			patch(STRH_BUFFER_SIZE, largestFrame + 8);
+		} finally {
+			channel.close();
+		}
+	}
+
+	private void patch(long offset, int value) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(value).flip();
+		channel.write(buffer, offset);
+	}
+
+}
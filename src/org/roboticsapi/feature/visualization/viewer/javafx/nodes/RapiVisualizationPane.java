@@ -7,30 +7,33 @@
 
 package org.roboticsapi.feature.visualization.viewer.javafx.nodes;
 
-import java.awt.image.BufferedImage;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.Executor;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
-
-import javax.imageio.ImageIO;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.roboticsapi.feature.visualization.RAPILogger;
 import org.roboticsapi.feature.visualization.rmi.RmiVisualizationClientAccepter;
+import org.roboticsapi.feature.visualization.tcp.TcpVisualizationProtocol;
 import org.roboticsapi.feature.visualization.viewer.javafx.Configuration;
 import org.roboticsapi.feature.visualization.viewer.javafx.lookup.Application;
 import org.roboticsapi.feature.visualization.viewer.javafx.lookup.FxLookupClient;
 import org.roboticsapi.feature.visualization.viewer.javafx.lookup.LookupListener;
 import org.roboticsapi.feature.visualization.viewer.javafx.model.RemoteSceneImpl;
+import org.roboticsapi.feature.visualization.viewer.javafx.model.RemoteSceneImpl.Activity;
 import org.roboticsapi.feature.visualization.viewer.javafx.model.RmiRemoteSceneFactoryImpl;
+import org.roboticsapi.feature.visualization.viewer.javafx.model.SceneJournal;
+import org.roboticsapi.feature.visualization.viewer.javafx.model.TcpRemoteSceneFactoryImpl;
 import org.roboticsapi.feature.visualization.viewer.javafx.nodes.ConnectionOverviewInterface.AppID;
 import org.roboticsapi.feature.visualization.viewer.javafx.nodes.ConnectionOverviewInterface.ControlListener;
 import org.roboticsapi.feature.visualization.viewer.javafx.nodes.ConnectionOverviewInterface.ControlListener.SelectionItem;
@@ -38,12 +41,13 @@ import org.roboticsapi.feature.visualization.viewer.javafx.nodes.ConnectionOverv
 import org.roboticsapi.feature.visualization.viewer.javafx.nodes.ConnectionOverviewInterface.SceneID;
 import org.roboticsapi.feature.visualization.viewer.javafx.nodes.ConnectionOverviewInterface.UnknownIdentifierException;
 
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.application.Platform;
-import javafx.embed.swing.SwingFXUtils;
 import javafx.scene.Group;
-import javafx.scene.Node;
-import javafx.scene.image.WritableImage;
 import javafx.scene.layout.BorderPane;
+import javafx.util.Duration;
 
 @SuppressWarnings("restriction")
 public class RapiVisualizationPane extends BorderPane {
@@ -59,8 +63,11 @@ public class RapiVisualizationPane extends BorderPane {
 	private final ConnectionOverviewPane connectorPane;
 	private final Map<SceneID, VisualizationPane> visualizationPanes = new HashMap<>();
 	private final Controller controller;
+	private final Timeline activityUpdate;
 	private SelectionItem[] oldSelection = new SelectionItem[0];
-	private String recordPath = null;
+	private VideoRecorder recorder = null;
+	private final ThumbnailService thumbnails;
+	private String journalPath = null;
 
 	private final Configuration configuration;
 
@@ -74,14 +81,21 @@ public class RapiVisualizationPane extends BorderPane {
 		connectorPane = new ConnectionOverviewPane(controller);
 		frameTree = new FrameTreePane();
 		splitPane = new SplitPane(connectorPane);
+		thumbnails = new ThumbnailService(connectorPane, configuration.getThumbnailBudget());
 		setCenter(splitPane);
 
 		for (String host : configuration.getObservedHosts()) {
 			connectorPane.addServer(host, false);
 		}
+
+		activityUpdate = new Timeline(new KeyFrame(Duration.seconds(1), e -> controller.updateSceneActivity()));
+		activityUpdate.setCycleCount(Animation.INDEFINITE);
+		activityUpdate.play();
 	}
 
 	public void shutdown() {
+		activityUpdate.stop();
+		thumbnails.stop();
 		controller.shutdown();
 	}
 
@@ -90,7 +104,6 @@ public class RapiVisualizationPane extends BorderPane {
 		private final Map<HostID, HostRapiMonitor> hostRapiMonitors = new HashMap<>();
 		private final Map<HostID, FxLookupClient> hostLookupMonitors = new HashMap<>();
 
-		private final Map<AppID, Registry> appConnections = new HashMap<>();
 		private final Map<AppID, AppSceneMonitor> appSceneMonitors = new HashMap<>();
 
 		@Override
@@ -119,15 +132,9 @@ public class RapiVisualizationPane extends BorderPane {
 				hostLookupMonitors.remove(hostLookupMonitors.keySet().iterator().next()).shutdown();
 			}
 			// Verbindungen zu Rapi-Instanzen schließen
-			while (!appConnections.isEmpty()) {
-				try {
-					AppID appId = appConnections.keySet().iterator().next();
-					appConnections.remove(appId);
-					AppSceneMonitor appSceneMonitor = appSceneMonitors.remove(appId);
-					AppSceneMonitor.unexportObject(appSceneMonitor, true);
-				} catch (Exception e) {
-					RAPILogger.logException(getClass(), e);
-				}
+			while (!appSceneMonitors.isEmpty()) {
+				AppID appId = appSceneMonitors.keySet().iterator().next();
+				appSceneMonitors.remove(appId).disconnect();
 			}
 		}
 
@@ -136,10 +143,18 @@ public class RapiVisualizationPane extends BorderPane {
 			// TODO: remove
 		}
 
-		private void setThumbnailFromVis(SceneID sceneId, Node content) throws UnknownIdentifierException {
-			// Set thumbnail
-			WritableImage snapshot = content.snapshot(null, null);
-			connectorPane.setSceneThumbnail(sceneId, snapshot);
+		/**
+		 * Updates the shown scenes with every pulse and scenes with a visible
+		 * thumbnail once per second. All other scenes are suspended, so the load of
+		 * the JavaFX thread depends on the visible scenes rather than on the
+		 * connected ones.
+		 */
+		private void updateSceneActivity() {
+			Set<SceneID> selected = new HashSet<>();
+			for (SelectionItem item : oldSelection)
+				selected.add(item.getSceneId());
+			for (AppSceneMonitor monitor : appSceneMonitors.values())
+				monitor.updateSceneActivity(selected);
 		}
 
 		private Map<SceneID, RemoteSceneImpl> shownScenes = new HashMap<>();
@@ -154,12 +169,11 @@ public class RapiVisualizationPane extends BorderPane {
 				if (shownScenes.containsKey(sceneId)) {
 					shownScenes.get(sceneId).removeFrameListener(frameTree);
 					shownScenes.get(sceneId).setOnUpdated(null);
+					shownScenes.get(sceneId).setLodCamera(null, null);
 				}
 				shownScenes.remove(sceneId);
-				try {
-					setThumbnailFromVis(sceneId, content);
-				} catch (UnknownIdentifierException e) {
-				}
+				// the thumbnail shows the last view of the scene
+				thumbnails.invalidate(sceneId);
 			}
 
 			// Wenn nur eine Szene selektiert: zeige entsprechendes Gui-Element
@@ -178,9 +192,8 @@ public class RapiVisualizationPane extends BorderPane {
 					content.setVisualizationNode(scene.getJavaFXScene());
 					splitPane.setContent(content);
 					shownScenes.put(id.getSceneId(), scene);
+					scene.setLodCamera(content.getCamera(), content::getHeight);
 					scene.addFrameListener(frameTree);
-					// Set thumbnail
-					setThumbnailFromVis(id.getSceneId(), content);
 					// record scene
 					recordSceneIfRequested(scene, content);
 				} catch (UnknownIdentifierException e) {
@@ -199,35 +212,13 @@ public class RapiVisualizationPane extends BorderPane {
 			}
 
 			oldSelection = selectedSceneIds;
+			updateSceneActivity();
 		}
 
-		Executor videoExporter = new ThreadPoolExecutor(0, 4, 2, TimeUnit.SECONDS, new LinkedBlockingQueue<>(20));
-		int videoFrame = 0;
-		long lastFrame = 0;
-
 		private void recordSceneIfRequested(RemoteSceneImpl scene, VisualizationPane content) {
 			scene.setOnUpdated(() -> {
-				if (recordPath == null)
-					return;
-
-				if (System.currentTimeMillis() > lastFrame + 50) {
-					lastFrame = System.currentTimeMillis();
-
-					WritableImage snapshot = content.snapshot(null, null);
-					int frame = videoFrame++;
-					videoExporter.execute(() -> {
-						BufferedImage rawimg = SwingFXUtils.fromFXImage(snapshot, null);
-						BufferedImage img = new BufferedImage(rawimg.getWidth(), rawimg.getHeight(),
-								BufferedImage.TYPE_3BYTE_BGR);
-						img.getGraphics().drawImage(rawimg, 0, 0, null);
-						try {
-
-							ImageIO.write(img, "jpg", new File(recordPath, frame + ".jpg"));
-						} catch (IOException e) {
-							e.printStackTrace();
-						}
-					});
-				}
+				if (recorder != null)
+					recorder.capture(content);
 			});
 		}
 
@@ -239,31 +230,31 @@ public class RapiVisualizationPane extends BorderPane {
 		public void connectionStateRequested(HostID hostId, AppID applicationId, boolean connect) {
 			if (connect) {
 				// bereits verbunden?
-				if (appConnections.containsKey(applicationId))
+				if (appSceneMonitors.containsKey(applicationId))
 					return;
 
 				try {
-					Registry registry = LocateRegistry.getRegistry(hostNames.get(hostId),
-							getApplication(hostId, applicationId).port);
-					RmiVisualizationClientAccepter server = (RmiVisualizationClientAccepter) registry
-							.lookup(RmiVisualizationClientAccepter.RMI_NAME);
-					AppSceneMonitor appFactory = new AppSceneMonitor(applicationId, connectorPane);
-					appConnections.put(applicationId, registry);
-					appSceneMonitors.put(applicationId, appFactory);
-					server.registerRemoteVisualizationClient(appFactory);
+					Application application = getApplication(hostId, applicationId);
+					AppSceneMonitor appSceneMonitor = new AppSceneMonitor(applicationId);
+					if (TcpVisualizationProtocol.TCP_SERVER_TYPE.equals(application.type)) {
+						appSceneMonitor.connectTcp(hostNames.get(hostId), application.port);
+						appSceneMonitors.put(applicationId, appSceneMonitor);
+					} else {
+						Registry registry = LocateRegistry.getRegistry(hostNames.get(hostId), application.port);
+						RmiVisualizationClientAccepter server = (RmiVisualizationClientAccepter) registry
+								.lookup(RmiVisualizationClientAccepter.RMI_NAME);
+						RmiRemoteSceneFactoryImpl appFactory = appSceneMonitor.createRmiFactory();
+						appSceneMonitors.put(applicationId, appSceneMonitor);
+						server.registerRemoteVisualizationClient(appFactory);
+					}
 				} catch (Exception e) {
 					RAPILogger.logException(getClass(), e);
 				}
 			} else {
 				AppSceneMonitor appSceneMonitor = appSceneMonitors.remove(applicationId);
-				appConnections.remove(applicationId);
 				if (appSceneMonitor == null)
 					return;
-				try {
-					AppSceneMonitor.unexportObject(appSceneMonitor, true);
-				} catch (Exception e) {
-					RAPILogger.logException(getClass(), e);
-				}
+				appSceneMonitor.disconnect();
 				appSceneMonitor.removeAllScenes();
 			}
 		}
@@ -329,35 +320,70 @@ public class RapiVisualizationPane extends BorderPane {
 			}
 		}
 
-		private class AppSceneMonitor extends RmiRemoteSceneFactoryImpl {
-			private static final long serialVersionUID = 1L;
+		private class AppSceneMonitor {
 			private final AppID appId;
-			private final Map<RemoteSceneImpl, SceneID> scenes = new HashMap<>();
+			private final Map<RemoteSceneImpl, SceneID> scenes = new ConcurrentHashMap<>();
 			private boolean alive = true;
+			private Closeable connection = null;
 
-			public AppSceneMonitor(AppID appId, ConnectionOverviewPane connectionOverviewPane) throws RemoteException {
-				super();
+			public AppSceneMonitor(AppID appId) {
 				this.appId = appId;
 			}
 
+			public RmiRemoteSceneFactoryImpl createRmiFactory() throws RemoteException {
+				RmiRemoteSceneFactoryImpl factory = new RmiRemoteSceneFactoryImpl(configuration.getSceneGraphMode()) {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected void onSceneAdded(RemoteSceneImpl scene) {
+						AppSceneMonitor.this.onSceneAdded(scene);
+					}
+
+					@Override
+					protected void onSceneRemoved(RemoteSceneImpl scene) {
+						AppSceneMonitor.this.onSceneRemoved(scene);
+					}
+				};
+				connection = () -> UnicastRemoteObject.unexportObject(factory, true);
+				return factory;
+			}
+
+			public void connectTcp(String host, int port) throws IOException {
+				connection = new TcpRemoteSceneFactoryImpl(host, port, configuration.getSceneGraphMode()) {
+					@Override
+					protected void onSceneAdded(RemoteSceneImpl scene) {
+						AppSceneMonitor.this.onSceneAdded(scene);
+					}
+
+					@Override
+					protected void onSceneRemoved(RemoteSceneImpl scene) {
+						AppSceneMonitor.this.onSceneRemoved(scene);
+					}
+				};
+			}
+
+			public void disconnect() {
+				try {
+					if (connection != null)
+						connection.close();
+				} catch (IOException e) {
+					RAPILogger.logException(getClass(), e);
+				}
+			}
+
 			protected void onSceneAdded(RemoteSceneImpl remoteScene) {
 				if (!alive)
 					return;
 				try {
 					SceneID sceneId = connectorPane.addScene(appId, remoteScene.getName(), "");
+					journalSceneIfRequested(remoteScene);
+					remoteScene.setActivity(Activity.THUMBNAIL);
 					scenes.put(remoteScene, sceneId);
-					visualizationPanes.put(sceneId, new VisualizationPane(remoteScene.getJavaFXScene(), configuration));
-					Platform.runLater(() -> {
-						try {
-							Group javaFXScene = remoteScene.getJavaFXScene();
-							// Scene s = new Scene(javaFXScene,
-							// ConnectionOverviewPane.THUMBNAIL_WIDTH,
-							// ConnectionOverviewPane.THUMBNAIL_HEIGHT);
-							WritableImage snapshot = javaFXScene.snapshot(null, null);
-							connectorPane.setSceneThumbnail(sceneId, snapshot);
-						} catch (UnknownIdentifierException e) {
-						}
-					});
+					VisualizationPane pane = new VisualizationPane(remoteScene.getJavaFXScene(), configuration);
+					visualizationPanes.put(sceneId, pane);
+					// panes never shown have no size yet
+					thumbnails.add(sceneId, remoteScene,
+							() -> pane.getWidth() > 0 ? pane : remoteScene.getJavaFXScene());
 
 					// Autoselect very first scene
 					if (initialAutoconnect == appId && scenes.size() == 1) {
@@ -370,6 +396,17 @@ public class RapiVisualizationPane extends BorderPane {
 				}
 			}
 
+			private void journalSceneIfRequested(RemoteSceneImpl remoteScene) {
+				String path = journalPath;
+				if (path == null)
+					return;
+				try {
+					remoteScene.setJournal(new SceneJournal(Paths.get(path), remoteScene.getName()));
+				} catch (IOException e) {
+					RAPILogger.logException(getClass(), e);
+				}
+			}
+
 			protected void onSceneRemoved(RemoteSceneImpl scene) {
 				if (!alive)
 					return;
@@ -378,7 +415,9 @@ public class RapiVisualizationPane extends BorderPane {
 
 			private void removeScene(RemoteSceneImpl scene) {
 				try {
-					connectorPane.removeScene(scenes.remove(scene));
+					SceneID sceneId = scenes.remove(scene);
+					thumbnails.remove(sceneId);
+					connectorPane.removeScene(sceneId);
 				} catch (UnknownIdentifierException e) {
 					RAPILogger.logException(getClass(), e);
 				}
@@ -392,6 +431,22 @@ public class RapiVisualizationPane extends BorderPane {
 				throw new UnknownIdentifierException(sceneId);
 			}
 
+			public void updateSceneActivity(Set<SceneID> selected) {
+				for (Map.Entry<RemoteSceneImpl, SceneID> scene : scenes.entrySet()) {
+					SceneID sceneId = scene.getValue();
+					try {
+						if (selected.contains(sceneId)) {
+							scene.getKey().setActivity(Activity.FULL);
+						} else if (connectorPane.isSceneThumbnailVisible(sceneId)) {
+							scene.getKey().setActivity(Activity.THUMBNAIL);
+						} else {
+							scene.getKey().setActivity(Activity.SUSPENDED);
+						}
+					} catch (UnknownIdentifierException e) {
+					}
+				}
+			}
+
 			public void removeAllScenes() {
 				alive = false;
 				while (!scenes.isEmpty()) {
@@ -402,8 +457,33 @@ public class RapiVisualizationPane extends BorderPane {
 
 	}
 
+	/**
+	 * Starts recording the shown scene into a video in the given directory, or
+	 * stops recording for <code>null</code>.
+	 */
 	public void setRecordPath(String path) {
-		this.recordPath = path;
+		if (recorder != null) {
+			recorder.stop();
+			recorder = null;
+		}
+		if (path != null)
+			recorder = new VideoRecorder(new File(path), VideoRecorder.DEFAULT_FPS);
+	}
+
+	/**
+	 * Returns the statistics of the current video recording, or
+	 * <code>null</code> if not recording.
+	 */
+	public String getRecordStatistics() {
+		return recorder == null ? null : recorder.getStatistics();
+	}
+
+	/**
+	 * Sets the directory scenes are journaled to, starting with the next scene
+	 * added, or <code>null</code> to stop journaling new scenes.
+	 */
+	public void setJournalPath(String path) {
+		this.journalPath = path;
 	}
 
 	public void showFrames(boolean selected) {
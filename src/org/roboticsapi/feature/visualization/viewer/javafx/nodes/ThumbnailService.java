@@ -0,0 +1,147 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. 
+ *
+ * Copyright 2010-2017 ISSE, University of Augsburg 
+ */
+
+package org.roboticsapi.feature.visualization.viewer.javafx.nodes;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+import org.roboticsapi.feature.visualization.RAPILogger;
+import org.roboticsapi.feature.visualization.viewer.javafx.model.RemoteSceneImpl;
+import org.roboticsapi.feature.visualization.viewer.javafx.nodes.ConnectionOverviewInterface.SceneID;
+import org.roboticsapi.feature.visualization.viewer.javafx.nodes.ConnectionOverviewInterface.UnknownIdentifierException;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.Node;
+
+/**
+ * Keeps the scene thumbnails of the connection overview up to date. With every
+ * pulse, the thumbnails are visited round-robin, continuing where the last
+ * pulse stopped, and rendered at thumbnail size until the time budget of the
+ * pulse is used up. Thumbnails that are not on screen, whose scene did not
+ * change since they were rendered or that were rendered less than
+ * {@link #REFRESH_INTERVAL} ago are skipped, so many listed scenes do not slow
+ * down the shown scene.
+ */
+public class ThumbnailService {
+
+	/**
+	 * default time thumbnails may be rendered per pulse, in milliseconds
+	 */
+	public static final double DEFAULT_BUDGET = 2;
+
+	/**
+	 * minimum time between two renderings of a thumbnail, in nanoseconds
+	 */
+	private static final long REFRESH_INTERVAL = 500_000_000L;
+
+	private final ConnectionOverviewInterface overview;
+	private final long budget;
+	private final List<Entry> entries = new CopyOnWriteArrayList<>();
+	private final AnimationTimer timer;
+
+	/**
+	 * position of the round-robin (only accessed from the JavaFX thread)
+	 */
+	private int next = 0;
+
+	/**
+	 * A thumbnail, the node it is rendered from and the state of the scene it
+	 * shows (only accessed from the JavaFX thread, except for the fields set on
+	 * creation)
+	 */
+	private static class Entry {
+		private final SceneID sceneId;
+		private final RemoteSceneImpl scene;
+		private final Supplier<Node> content;
+		private final FrameCapture capture = new FrameCapture(ConnectionOverviewPane.THUMBNAIL_WIDTH,
+				ConnectionOverviewPane.THUMBNAIL_HEIGHT);
+		private long renderedCount = -1;
+		private long renderedAt = 0;
+
+		public Entry(SceneID sceneId, RemoteSceneImpl scene, Supplier<Node> content) {
+			this.sceneId = sceneId;
+			this.scene = scene;
+			this.content = content;
+		}
+	}
+
+	/**
+	 * Creates the service and starts refreshing.
+	 * 
+	 * @param overview the overview showing the thumbnails
+	 * @param budget   time thumbnails may be rendered per pulse, in
+	 *                 milliseconds
+	 */
+	public ThumbnailService(ConnectionOverviewInterface overview, double budget) {
+		this.overview = overview;
+		this.budget = (long) (budget * 1e6);
+		timer = new AnimationTimer() {
+			@Override
+			public void handle(long now) {
+				refresh(now);
+			}
+		};
+		timer.start();
+	}
+
+	/**
+	 * Adds the thumbnail of a scene.
+	 * 
+	 * @param content supplies the node the thumbnail is rendered from
+	 */
+	public void add(SceneID sceneId, RemoteSceneImpl scene, Supplier<Node> content) {
+		entries.add(new Entry(sceneId, scene, content));
+	}
+
+	public void remove(SceneID sceneId) {
+		entries.removeIf(entry -> entry.sceneId == sceneId);
+	}
+
+	/**
+	 * Renders the thumbnail of the scene again even if the scene did not change,
+	 * e.g. because the view it is rendered from changed.
+	 */
+	public void invalidate(SceneID sceneId) {
+		for (Entry entry : entries) {
+			if (entry.sceneId == sceneId) {
+				entry.renderedCount = -1;
+				entry.renderedAt = 0;
+			}
+		}
+	}
+
+	public void stop() {
+		timer.stop();
+	}
+
+	private void refresh(long now) {
+		Object[] visit = entries.toArray();
+		long deadline = System.nanoTime() + budget;
+		for (int i = 0; i < visit.length && System.nanoTime() < deadline; i++) {
+			next = (next + 1) % visit.length;
+			Entry entry = (Entry) visit[next];
+			long count = entry.scene.getUpdateCount();
+			if (count == entry.renderedCount || now - entry.renderedAt < REFRESH_INTERVAL)
+				continue;
+			try {
+				if (!overview.isSceneThumbnailVisible(entry.sceneId))
+					continue;
+				entry.capture.capture(entry.content.get());
+				overview.setSceneThumbnail(entry.sceneId, entry.capture.getImage());
+			} catch (UnknownIdentifierException e) {
+				continue;
+			} catch (Exception e) {
+				RAPILogger.logException(this, e);
+			}
+			entry.renderedCount = count;
+			entry.renderedAt = now;
+		}
+	}
+
+}
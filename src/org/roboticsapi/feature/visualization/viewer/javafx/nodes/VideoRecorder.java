@@ -0,0 +1,292 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/. 
+ *
+ * Copyright 2010-2017 ISSE, University of Augsburg 
+ */
+
+package org.roboticsapi.feature.visualization.viewer.javafx.nodes;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import org.roboticsapi.feature.visualization.RAPILogger;
+
+import javafx.scene.Node;
+
+/**
+ * Records snapshots of a node into Motion JPEG AVI files.
+ * 
+ * Capturing on the JavaFX thread only renders the node into a reused image and
+ * copies the pixels into one of a fixed number of pooled buffers. Encoder
+ * threads compress the buffers in parallel and return them to the pool, a
+ * writer thread appends the frames in capture order. If no buffer is free
+ * because encoding falls behind, the frame is dropped and the video repeats
+ * the previous frame, so the video keeps the timing of the scene. While frames
+ * are dropped, only every second frame is captured until the encoders caught
+ * up.
+ */
+public class VideoRecorder {
+
+	public static final int DEFAULT_FPS = 20;
+	private static final float JPEG_QUALITY = 0.85f;
+
+	private final File directory;
+	private final int fps;
+	private final long frameInterval;
+	private final int encoderCount = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+	/**
+	 * free pixel buffers, and the frames waiting for the writer in capture order
+	 */
+	private final BlockingQueue<int[]> buffers;
+	private final BlockingQueue<Frame> frames;
+	private final ExecutorService encoders;
+	private final Thread writer;
+
+	private final ThreadLocal<Encoder> encoder = ThreadLocal.withInitial(Encoder::new);
+
+	/**
+	 * capture the node is rendered into and the size of the recording, fixed by
+	 * the first frame (only accessed from the JavaFX thread)
+	 */
+	private FrameCapture capture = null;
+	private int width, height;
+	private long start = -1;
+	private long lastSlot = -1;
+	private int decimation = 1;
+
+	private final AtomicLong captured = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong encoded = new AtomicLong();
+	private volatile double encodedFps = 0;
+	private volatile boolean stopped = false;
+
+	/**
+	 * A captured frame and its encoding
+	 */
+	private static class Frame {
+		private final long slot;
+		private final Future<byte[]> jpeg;
+
+		public Frame(long slot, Future<byte[]> jpeg) {
+			this.slot = slot;
+			this.jpeg = jpeg;
+		}
+	}
+
+	/**
+	 * JPEG encoder reusing its image and output buffer, one per encoder thread
+	 */
+	private class Encoder {
+		private final ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+		private final ImageWriteParam param = writer.getDefaultWriteParam();
+		private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		private BufferedImage image = null;
+
+		public Encoder() {
+			param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			param.setCompressionQuality(JPEG_QUALITY);
+		}
+
+		public byte[] encode(int[] pixels) throws IOException {
+			if (image == null)
+				image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			// the alpha channel of the ARGB pixels is ignored by the RGB image
+			System.arraycopy(pixels, 0, ((DataBufferInt) image.getRaster().getDataBuffer()).getData(), 0,
+					pixels.length);
+			out.reset();
+			try (MemoryCacheImageOutputStream stream = new MemoryCacheImageOutputStream(out)) {
+				writer.setOutput(stream);
+				writer.write(null, new IIOImage(image, null, null), param);
+			}
+			return out.toByteArray();
+		}
+	}
+
+	/**
+	 * Starts a recording into the given directory.
+	 * 
+	 * @param directory the directory the video files are created in
+	 * @param fps       frames per second of the video
+	 */
+	public VideoRecorder(File directory, int fps) {
+		this.directory = directory;
+		this.fps = fps;
+		this.frameInterval = 1_000_000_000L / fps;
+		buffers = new ArrayBlockingQueue<>(2 * encoderCount);
+		frames = new ArrayBlockingQueue<>(2 * encoderCount + 1);
+		encoders = Executors.newFixedThreadPool(encoderCount, r -> {
+			Thread thread = new Thread(r, "Video encoder");
+			thread.setDaemon(true);
+			return thread;
+		});
+		writer = new Thread(this::write, "Video writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Captures the node if a frame is due. Called on the JavaFX thread after
+	 * the scene changed.
+	 */
+	public void capture(Node node) {
+		if (stopped)
+			return;
+		long now = System.nanoTime();
+		if (start < 0) {
+			width = Math.max(2, (int) Math.ceil(node.getLayoutBounds().getWidth()) & ~1);
+			height = Math.max(2, (int) Math.ceil(node.getLayoutBounds().getHeight()) & ~1);
+			capture = new FrameCapture(width, height);
+			for (int i = 0; i < 2 * encoderCount; i++)
+				buffers.add(new int[width * height]);
+			start = now;
+		}
+		long slot = (now - start) / frameInterval;
+		if (slot <= lastSlot)
+			return;
+		lastSlot = slot;
+
+		// every second frame is skipped while encoding falls behind, and one
+		// place in the queue is kept for the end marker
+		int[] pixels = slot % decimation == 0 && frames.remainingCapacity() > 1 ? buffers.poll() : null;
+		if (pixels == null) {
+			dropped.incrementAndGet();
+			decimation = 2;
+			return;
+		}
+		if (buffers.size() == 2 * encoderCount - 1)
+			decimation = 1;
+
+		// a node larger than the recording is clipped
+		capture.capture(node, 1);
+		capture.getPixels(pixels);
+		captured.incrementAndGet();
+		Future<byte[]> jpeg = encoders.submit(() -> {
+			try {
+				return encoder.get().encode(pixels);
+			} finally {
+				buffers.add(pixels);
+			}
+		});
+		frames.add(new Frame(slot, jpeg));
+	}
+
+	private void write() {
+		MjpegAviWriter avi = null;
+		long written = -1;
+		long lastReport = System.nanoTime();
+		long lastEncoded = 0;
+		try {
+			while (true) {
+				Frame frame = frames.take();
+				if (frame.jpeg == null)
+					break;
+				byte[] jpeg;
+				try {
+					jpeg = frame.jpeg.get();
+				} catch (ExecutionException e) {
+					RAPILogger.logException(this, e);
+					continue;
+				}
+				encoded.incrementAndGet();
+
+				if (avi != null && avi.getSize() + jpeg.length > MjpegAviWriter.MAX_SIZE) {
+					avi.close();
+					avi = null;
+				}
+				if (avi == null) {
+					avi = new MjpegAviWriter(createFile().toPath(), width, height, fps);
+					written = frame.slot - 1;
+				}
+				// dropped frames repeat the previous frame
+				for (long slot = written + 1; slot < frame.slot; slot++)
+					avi.writeFrame(null);
+				avi.writeFrame(jpeg);
+				written = frame.slot;
+
+				long now = System.nanoTime();
+				if (now - lastReport >= 1_000_000_000L) {
+					encodedFps = (encoded.get() - lastEncoded) * 1e9 / (now - lastReport);
+					lastEncoded = encoded.get();
+					lastReport = now;
+				}
+			}
+		} catch (IOException e) {
+			RAPILogger.logException(this, e);
+			stopped = true;
+		} catch (InterruptedException e) {
+		} finally {
+			try {
+				if (avi != null)
+					avi.close();
+			} catch (IOException e) {
+				RAPILogger.logException(this, e);
+			}
+			encoders.shutdown();
+			RAPILogger.getLogger().info("Video recording finished: " + getStatistics());
+		}
+	}
+
+	private File createFile() {
+		String name = "recording-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+		File file = new File(directory, name + ".avi");
+		for (int i = 1; file.exists(); i++)
+			file = new File(directory, name + "-" + i + ".avi");
+		return file;
+	}
+
+	/**
+	 * Stops capturing. The frames captured so far are still written.
+	 */
+	public void stop() {
+		if (stopped)
+			return;
+		stopped = true;
+		frames.offer(new Frame(-1, null));
+	}
+
+	public long getCapturedFrames() {
+		return captured.get();
+	}
+
+	public long getDroppedFrames() {
+		return dropped.get();
+	}
+
+	public long getEncodedFrames() {
+		return encoded.get();
+	}
+
+	/**
+	 * Returns the number of frames encoded per second, measured over the last
+	 * second.
+	 */
+	public double getEncodedFps() {
+		return encodedFps;
+	}
+
+	public String getStatistics() {
+		return String.format("%d captured, %d dropped, %d encoded, %.1f fps", getCapturedFrames(),
+				getDroppedFrames(), getEncodedFrames(), getEncodedFps());
+	}
+
+}
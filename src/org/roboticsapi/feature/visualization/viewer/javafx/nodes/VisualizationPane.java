@@ -37,7 +37,6 @@ import javafx.scene.control.Control;
 import javafx.scene.control.Skin;
 import javafx.scene.control.SkinBase;
 import javafx.scene.image.Image;
-import javafx.scene.image.WritableImage;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.paint.Color;
 import javafx.scene.paint.PhongMaterial;
@@ -59,6 +58,7 @@ public class VisualizationPane extends Control implements FrameSelectionListener
 	private Sphere dragPoint = null;
 //	private Sphere dragSphere = null;
 	private Group frame = null;
+	private FrameCapture snapshot = null;
 
 	private class VisualizationPaneSkin extends SkinBase<VisualizationPane> {
 		protected VisualizationPaneSkin(VisualizationPane control) {
@@ -177,10 +177,19 @@ public class VisualizationPane extends Control implements FrameSelectionListener
 		//
 	}
 
+	public PerspectiveCamera getCamera() {
+		return camera.getCamera();
+	}
+
+	/**
+	 * Returns a snapshot of the pane. The image is reused by the next snapshot
+	 * as long as the size of the pane does not change.
+	 */
 	public final Image createSnapshot() {
-		WritableImage writableImage = new WritableImage((int) getWidth(), (int) getHeight());
-		snapshot(null, writableImage);
-		return writableImage;
+		int width = (int) getWidth(), height = (int) getHeight();
+		if (snapshot == null || snapshot.getWidth() != width || snapshot.getHeight() != height)
+			snapshot = new FrameCapture(width, height);
+		return snapshot.capture(this, 1);
 	}
 
 	public final void dispose() {